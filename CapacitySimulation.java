@@ -0,0 +1,358 @@
+package edu.hcu.triage;
+
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.Random;
+
+/**
+ * Discrete-event simulation of the ER for capacity planning
+ * ("how many doctors do we need for Saturday night?").
+ *
+ * Drives the real PatientRegistry / TriageQueue / TreatmentLog, but on a
+ * simulated clock: arrivals follow an hour-of-day Poisson profile, each
+ * treatment takes an exponentially distributed time whose mean depends on
+ * severity, and N clinicians pull from the queue.
+ *
+ * The event loop is allocation-light: the clock is a long (seconds), and
+ * pending events live in a primitive binary heap holding at most
+ * clinicians + 1 entries (one next-arrival plus one finish per busy clinician).
+ *
+ * Arrival gaps, severities, ages and treatment times each come from their
+ * own seeded stream, and each patient's treatment time is drawn when they
+ * arrive. A sweep over clinician counts therefore replays exactly the same
+ * patients; only the staffing differs.
+ */
+public final class CapacitySimulation {
+
+    /** Default mean treatment time in minutes, indexed by severity 1..10. */
+    public static final double[] DEFAULT_SERVICE_MINUTES =
+            {0, 15, 15, 20, 25, 30, 40, 50, 60, 90, 120};
+
+    private static final int ARRIVAL = -1; // event payload; >= 0 means "clinician i finished"
+
+    private final int clinicians;
+    private final double[] arrivalsPerHour;   // 24 entries, hour of day -> mean arrivals
+    private final double[] serviceMinutes;    // 11 entries, severity -> mean minutes
+    private final SampleWorkloads.SeverityDistribution distribution;
+    private final long seed;
+
+    // Event heap: parallel primitive arrays ordered by time
+    private long[] heapTime;
+    private int[] heapWho;
+    private int heapSize;
+
+    public CapacitySimulation(int clinicians, double[] arrivalsPerHour, double[] serviceMinutes,
+                              SampleWorkloads.SeverityDistribution distribution, long seed) {
+        if (clinicians < 1) throw new IllegalArgumentException("clinicians must be >= 1");
+        if (arrivalsPerHour == null || arrivalsPerHour.length != 24) {
+            throw new IllegalArgumentException("arrivalsPerHour needs 24 entries");
+        }
+        if (serviceMinutes == null || serviceMinutes.length != 11) {
+            throw new IllegalArgumentException("serviceMinutes needs 11 entries (index = severity)");
+        }
+        this.clinicians = clinicians;
+        this.arrivalsPerHour = arrivalsPerHour.clone();
+        this.serviceMinutes = serviceMinutes.clone();
+        this.distribution = distribution;
+        this.seed = seed;
+    }
+
+    /** Same rate every hour of the day. */
+    public static double[] flatProfile(double perHour) {
+        double[] d = new double[24];
+        Arrays.fill(d, perHour);
+        return d;
+    }
+
+    /**
+     * Usage: java edu.hcu.triage.CapacitySimulation [days] [arrivalsPerHour] [minClinicians] [maxClinicians]
+     * Sweeps the clinician count and prints one line per staffing level.
+     */
+    public static void main(String[] args) {
+        int days = args.length > 0 ? Integer.parseInt(args[0]) : 30;
+        double perHour = args.length > 1 ? Double.parseDouble(args[1]) : 40;
+        int min = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+        int max = args.length > 3 ? Integer.parseInt(args[3]) : 30;
+
+        System.out.printf("%d day(s), %.1f arrivals/hour%n", days, perHour);
+        for (int n = min; n <= max; n++) {
+            CapacitySimulation sim = new CapacitySimulation(n, flatProfile(perHour), DEFAULT_SERVICE_MINUTES,
+                    SampleWorkloads.SeverityDistribution.SKEWED, 12345L);
+            long t0 = System.nanoTime();
+            Result r = sim.run(new PatientRegistry(), new TriageQueue(), new TreatmentLog(),
+                    Instant.parse("2024-01-06T00:00:00Z"), days * 24L * 3600L);
+            System.out.printf("clinicians=%-3d %s  (%.0f ms)%n", n, r, (System.nanoTime() - t0) / 1_000_000.0);
+        }
+    }
+
+    /**
+     * Run the simulation.
+     * Steps:
+     * 1) Schedule the first arrival.
+     * 2) Pop the earliest event and advance the clock to it.
+     *    - ARRIVAL: register + enqueue the patient, schedule the next arrival.
+     *    - FINISH:  log the TreatedCase and free the clinician.
+     * 3) Any idle clinician takes the next patient from the queue.
+     * 4) Stop when the clock passes the horizon; patients still waiting contribute
+     *    their wait so far as censored waits.
+     *
+     * @param start           simulated wall-clock time of t = 0
+     * @param durationSeconds simulated horizon
+     */
+    public Result run(PatientRegistry registry, TriageQueue queue, TreatmentLog log,
+                      Instant start, long durationSeconds) {
+        Random arrivalRng = new Random(seed);
+        Random attributeRng = new Random(seed + 1);
+        Random serviceRng = new Random(seed + 2);
+        SampleWorkloads severities = new SampleWorkloads(seed + 3, distribution); // seeds its own Random
+        long base = start.getEpochSecond();
+        int startHour = (int) ((base / 3600) % 24);
+
+        heapTime = new long[clinicians + 1];
+        heapWho = new int[clinicians + 1];
+        heapSize = 0;
+
+        Patient[] treating = new Patient[clinicians];
+        long[] serviceStart = new long[clinicians];
+        int[] idle = new int[clinicians];          // stack of idle clinician indexes
+        int idleCount = clinicians;
+        for (int i = 0; i < clinicians; i++) {
+            idle[i] = clinicians - 1 - i;
+        }
+
+        Result r = new Result(clinicians, durationSeconds);
+        long now = 0;
+        long nextId = 0;
+
+        // Treatment time per patient, drawn at arrival; index = arrivalSeq - firstSeq
+        long[] serviceSeconds = new long[256];
+        long firstSeq = -1;
+
+        long first = nextArrival(arrivalRng, 0, startHour, durationSeconds);
+        if (first >= 0) push(first, ARRIVAL);
+
+        while (heapSize > 0) {
+            now = heapTime[0];
+            int who = heapWho[0];
+            pop();
+            if (now > durationSeconds) break;
+
+            if (who == ARRIVAL) {
+                int severity = severities.randomSeverity();
+                String id = "S" + nextId++;
+                Patient p = registry.registerNew(id, id, attributeRng.nextInt(90), severity,
+                        Instant.ofEpochSecond(base + now));
+                if (firstSeq < 0) firstSeq = p.getArrivalSeq();
+                int slot = (int) (p.getArrivalSeq() - firstSeq);
+                if (slot >= serviceSeconds.length) serviceSeconds = Arrays.copyOf(serviceSeconds, slot * 2);
+                serviceSeconds[slot] = serviceTime(serviceRng, severity);
+
+                queue.enqueue(p);
+                r.arrivals++;
+                r.maxWaiting = Math.max(r.maxWaiting, queue.size());
+                long next = nextArrival(arrivalRng, now, startHour, durationSeconds);
+                if (next >= 0) push(next, ARRIVAL);
+            } else {
+                Patient p = treating[who];
+                log.append(new TreatedCase(p, Instant.ofEpochSecond(base + serviceStart[who]),
+                        Instant.ofEpochSecond(base + now), outcomeFor(p), "simulated"));
+                r.busySeconds += now - serviceStart[who];
+                r.treated++;
+                treating[who] = null;
+                idle[idleCount++] = who;
+            }
+
+            // Hand waiting patients to idle clinicians
+            while (idleCount > 0) {
+                Optional<Patient> next = queue.dequeueNext();
+                if (next.isEmpty()) break;
+                Patient p = next.get();
+                int c = idle[--idleCount];
+
+                treating[c] = p;
+                serviceStart[c] = now;
+                r.recordWait(p.getSeverity(), now - (p.getArrival().getEpochSecond() - base));
+
+                long slot = firstSeq < 0 ? -1 : p.getArrivalSeq() - firstSeq;
+                push(now + (slot >= 0 && slot < serviceSeconds.length
+                        ? serviceSeconds[(int) slot]
+                        : serviceTime(serviceRng, p.getSeverity())), c); // not one of ours: draw now
+            }
+        }
+
+        // Clinicians still busy at the horizon count only up to the horizon
+        for (int c = 0; c < clinicians; c++) {
+            if (treating[c] != null) r.busySeconds += durationSeconds - serviceStart[c];
+        }
+        // Still waiting: their wait so far is a lower bound (right-censored)
+        for (Patient p : queue.snapshotOrder()) {
+            r.recordCensoredWait(p.getSeverity(), durationSeconds - (p.getArrival().getEpochSecond() - base));
+        }
+        r.leftWaiting = queue.size();
+        return r;
+    }
+
+    /**
+     * Next arrival time under the hour-of-day profile (piecewise Poisson).
+     * Steps:
+     * 1) Sample a gap with the current hour's rate.
+     * 2) If it lands past the end of the hour, move to the hour boundary and
+     *    sample again with the next hour's rate (memoryless, so this is exact).
+     * 3) Hours with rate 0 are skipped.
+     * @return the arrival time, or -1 if there is none before the horizon
+     *         (or the profile is all zero)
+     */
+    private long nextArrival(Random rng, long now, int startHour, long horizon) {
+        long t = now;
+        int closedHours = 0;
+        while (t <= horizon) {
+            long hourEnd = (t / 3600 + 1) * 3600;
+            double perSecond = arrivalsPerHour[(int) ((startHour + t / 3600) % 24)] / 3600.0;
+            if (perSecond <= 0) {
+                if (++closedHours >= 24) return -1;
+                t = hourEnd;
+                continue;
+            }
+            closedHours = 0;
+            long next = t + 1 + (long) (-Math.log(1.0 - rng.nextDouble()) / perSecond);
+            if (next < hourEnd) return next;
+            t = hourEnd;
+        }
+        return -1;
+    }
+
+    /** Exponential treatment time for `severity`, at least one minute. */
+    private long serviceTime(Random rng, int severity) {
+        double mean = serviceMinutes[severity] * 60.0;
+        return Math.max(60L, (long) (-Math.log(1.0 - rng.nextDouble()) * mean));
+    }
+
+    private static TreatedCase.Outcome outcomeFor(Patient p) {
+        if (p.getSeverity() >= 8) return TreatedCase.Outcome.TRANSFER;
+        if (p.getSeverity() >= 5) return TreatedCase.Outcome.OBSERVE;
+        return TreatedCase.Outcome.STABLE;
+    }
+
+    /* ===== Primitive min-heap on (time, who) ===== */
+
+    private void push(long time, int who) {
+        int i = heapSize++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (heapTime[parent] <= time) break;
+            heapTime[i] = heapTime[parent];
+            heapWho[i] = heapWho[parent];
+            i = parent;
+        }
+        heapTime[i] = time;
+        heapWho[i] = who;
+    }
+
+    private void pop() {
+        long time = heapTime[--heapSize];
+        int who = heapWho[heapSize];
+        int i = 0;
+        int half = heapSize >>> 1;
+        while (i < half) {
+            int child = 2 * i + 1;
+            if (child + 1 < heapSize && heapTime[child + 1] < heapTime[child]) child++;
+            if (time <= heapTime[child]) break;
+            heapTime[i] = heapTime[child];
+            heapWho[i] = heapWho[child];
+            i = child;
+        }
+        heapTime[i] = time;
+        heapWho[i] = who;
+    }
+
+    /* ===== Metrics ===== */
+
+    /** Wait-time and utilisation figures for one run. */
+    public static final class Result {
+        private final int clinicians;
+        private final long durationSeconds;
+
+        long arrivals, treated, busySeconds;
+        int maxWaiting, leftWaiting, censored;
+
+        // Waits in seconds, per severity (index 1..10) and overall
+        private final long[][] waits = new long[11][];
+        private final int[] counts = new int[11];
+
+        Result(int clinicians, long durationSeconds) {
+            this.clinicians = clinicians;
+            this.durationSeconds = durationSeconds;
+            for (int s = 1; s <= 10; s++) {
+                waits[s] = new long[256];
+            }
+        }
+
+        void recordWait(int severity, long seconds) {
+            if (counts[severity] == waits[severity].length) {
+                waits[severity] = Arrays.copyOf(waits[severity], counts[severity] * 2);
+            }
+            waits[severity][counts[severity]++] = seconds;
+        }
+
+        /** A patient still waiting at the horizon: counted with the wait so far. */
+        void recordCensoredWait(int severity, long secondsSoFar) {
+            recordWait(severity, secondsSoFar);
+            censored++;
+        }
+
+        public long getArrivals() { return arrivals; }
+        public long getTreated() { return treated; }
+        public int getMaxWaiting() { return maxWaiting; }
+        public int getLeftWaiting() { return leftWaiting; }
+
+        /** Waits that were still running at the horizon (included in the wait figures). */
+        public int getCensoredWaits() { return censored; }
+
+        /** Fraction of clinician time spent treating, 0..1. */
+        public double getUtilisation() {
+            return busySeconds / (double) (clinicians * durationSeconds);
+        }
+
+        /**
+         * Wait percentile in minutes for one severity, or for all when severity is 0.
+         * Includes censored waits, so with {@link #getCensoredWaits()} > 0 it is a lower bound.
+         */
+        public double waitMinutes(int severity, double q) {
+            long[] all = collect(severity);
+            if (all.length == 0) return 0;
+            Arrays.sort(all);
+            int idx = (int) Math.min(all.length - 1, Math.max(0, Math.ceil(q * all.length) - 1));
+            return all[idx] / 60.0;
+        }
+
+        public double meanWaitMinutes(int severity) {
+            long[] all = collect(severity);
+            if (all.length == 0) return 0;
+            long sum = 0;
+            for (long w : all) sum += w;
+            return sum / (double) all.length / 60.0;
+        }
+
+        private long[] collect(int severity) {
+            if (severity != 0) return Arrays.copyOf(waits[severity], counts[severity]);
+            int n = 0;
+            for (int s = 1; s <= 10; s++) n += counts[s];
+            long[] all = new long[n];
+            int at = 0;
+            for (int s = 1; s <= 10; s++) {
+                System.arraycopy(waits[s], 0, all, at, counts[s]);
+                at += counts[s];
+            }
+            return all;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("arrivals=%d treated=%d util=%.1f%% wait(min) mean=%.1f p50=%.1f p95=%.1f "
+                            + "sev10-p95=%.1f maxWaiting=%d leftWaiting=%d censored=%d",
+                    arrivals, treated, 100 * getUtilisation(), meanWaitMinutes(0), waitMinutes(0, 0.5),
+                    waitMinutes(0, 0.95), waitMinutes(10, 0.95), maxWaiting, leftWaiting, censored);
+        }
+    }
+}
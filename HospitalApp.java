@@ -1,5 +1,6 @@
 package edu.hcu.triage;
 
+import java.io.IOException;
 import java.nio.file.Path;
 import java.time.Instant;
 import java.util.*;
@@ -13,13 +14,22 @@ import java.util.*;
  */
 public class HospitalApp {
 
-    private final PatientRegistry registry = new PatientRegistry();
+    private final PatientRegistry registry;
     private final TriageQueue triage = new TriageQueue();
     private final TreatmentLog log = new TreatmentLog();
     private final Scanner in = new Scanner(System.in);
 
-    public static void main(String[] args) {
-        new HospitalApp().run();
+    public HospitalApp() {
+        this(new PatientRegistry());
+    }
+
+    public HospitalApp(PatientRegistry registry) {
+        this.registry = registry;
+    }
+
+    /** -Dtriage.hotCapacity=N -Dtriage.spillDir=DIR switch on the tiered registry. */
+    public static void main(String[] args) throws IOException {
+        new HospitalApp(PatientRegistry.fromSystemProperties()).run();
     }
 
     /** Main control loop */
@@ -49,6 +59,8 @@ public class HospitalApp {
                 case "8": showTreatmentLog(); break;
                 case "9": performanceDemo(); break;
                 case "10": exportLogToCsv(); break;
+                case "11": capacitySimulation(); break;
+                case "12": exportLogToBinary(); break;
 
                 case "0":
                     System.out.println("Goodbye.");
@@ -119,10 +131,14 @@ public class HospitalApp {
     /** (3) Enqueue patient by ID into the triage queue */
     private void enqueueForTriage() {
         String id = prompt("Enter patient ID to enqueue: ");
-        boolean ok = triage.enqueueById(registry, id);
+        try {
+            boolean ok = triage.enqueueById(registry, id);
 
-        if (ok) System.out.println("Added to triage.");
-        else System.out.println("No such ID.");
+            if (ok) System.out.println("Added to triage.");
+            else System.out.println("No such ID.");
+        } catch (IllegalArgumentException e) {
+            System.out.println("Not added: " + e.getMessage());
+        }
     }
 
     /** (4) Peek at next patient (non-destructive) */
@@ -221,6 +237,41 @@ public class HospitalApp {
         }
     }
 
+    /** (11) Simulate staffing levels on a simulated clock (separate from the live queue) */
+    private void capacitySimulation() {
+        System.out.println("---- Capacity Simulation ----");
+
+        int days = promptInt("Days to simulate: ");
+        int perHour = promptInt("Arrivals per hour: ");
+        int doctors = promptInt("Clinicians: ");
+
+        try (PerfTimer t = new PerfTimer("Simulation")) {
+            CapacitySimulation sim = new CapacitySimulation(doctors,
+                    CapacitySimulation.flatProfile(perHour),
+                    CapacitySimulation.DEFAULT_SERVICE_MINUTES,
+                    SampleWorkloads.SeverityDistribution.SKEWED, 12345L);
+
+            CapacitySimulation.Result r = sim.run(new PatientRegistry(), new TriageQueue(), new TreatmentLog(),
+                    Instant.now(), days * 24L * 3600L);
+            System.out.println(r);
+        } catch (Exception e) {
+            System.out.println("Simulation failed: " + e.getMessage());
+        }
+    }
+
+    /** (12) Export treatment log in the compact binary format */
+    private void exportLogToBinary() {
+        String path = prompt("Binary file name to export to: ");
+        Path file = Path.of(path);
+
+        try {
+            BinaryIO.exportLog(file, log.asListOldestFirst());
+            System.out.println("Exported to: " + file);
+        } catch (Exception e) {
+            System.out.println("Export failed: " + e.getMessage());
+        }
+    }
+
     /* ==========================================
      *               Menu Printing
      * ========================================== */
@@ -238,6 +289,8 @@ public class HospitalApp {
         System.out.println("8) Show treatment log");
         System.out.println("9) Performance demo");
         System.out.println("10) Export log to CSV");
+        System.out.println("11) Capacity simulation");
+        System.out.println("12) Export log to binary file");
         System.out.println("0) Exit");
         System.out.println("=================================");
     }
@@ -33,6 +33,11 @@ public class Patient {
 
     // Define Constructors with basic validation with safe defaults and no exceptions (Chat-GPT for constructor only)
     public Patient(String id,String name, int age, int severity, long arrivalSeq) {
+        this(id, name, age, severity, Instant.now(), arrivalSeq);
+    }
+
+    // Same as above but with an explicit arrival time (registry timestamp, simulated clock, imports)
+    public Patient(String id, String name, int age, int severity, Instant arrival, long arrivalSeq) {
         // Assign unique ID or default to "No Id" if patient has no ID
         this.id = (id != null && !id.isBlank()) ? id : "No Id";
         // Assign name or default to "No name" if patient name is empty
@@ -41,8 +46,8 @@ public class Patient {
         this.age = (age >= 0) ? age : 0;
         // Severity is set to 1 by default and ensures it's between 1 and 10
         this.severity = (severity >= 1 && severity <= 10) ? severity : 1;
-        // Create time for patient object
-        this.arrival = Instant.now();
+        // Record arrival time, defaulting to now if none was given
+        this.arrival = (arrival != null) ? arrival : Instant.now();
         // Set the sequence number for ordering patients in triage queue
         this.arrivalSeq = arrivalSeq;
     }
@@ -93,7 +98,7 @@ public class Patient {
     // stored in HashMap and other collections (Chat-GPT support).
     @Override
     public boolean equals(Object o) {
-        if (this == o) return false;
+        if (this == o) return true;
         if (!(o instanceof Patient)) return false;
         Patient other = (Patient) o;
         return Objects.equals(id, other.id);
@@ -0,0 +1,52 @@
+package edu.hcu.triage;
+
+import java.time.Instant;
+
+/**
+ * Immutable point-in-time copy of a {@link Patient}.
+ * Patient itself stays mutable for the UI / registry; snapshots hand out
+ * these records instead, so a report can never see a half-applied update.
+ */
+public final class PatientRecord {
+
+    private final String id;
+    private final String name;
+    private final int age;
+    private final int severity;
+    private final Instant arrival;
+    private final long arrivalSeq;
+
+    private PatientRecord(String id, String name, int age, int severity, Instant arrival, long arrivalSeq) {
+        this.id = id;
+        this.name = name;
+        this.age = age;
+        this.severity = severity;
+        this.arrival = arrival;
+        this.arrivalSeq = arrivalSeq;
+    }
+
+    /**
+     * Copy the patient's current state. Writers change a Patient while holding
+     * its monitor (registry updates, re-triage), so the copy is never torn
+     * even when taken under a different lock (queue, log).
+     */
+    public static PatientRecord of(Patient p) {
+        synchronized (p) {
+            return new PatientRecord(p.getId(), p.getName(), p.getAge(), p.getSeverity(),
+                    p.getArrival(), p.getArrivalSeq());
+        }
+    }
+
+    public String getId() { return id; }
+    public String getName() { return name; }
+    public int getAge() { return age; }
+    public int getSeverity() { return severity; }
+    public Instant getArrival() { return arrival; }
+    public long getArrivalSeq() { return arrivalSeq; }
+
+    @Override
+    public String toString() {
+        return String.format("PatientRecord{id='%s', name='%s', age=%d, severity=%d, arrivalSeq=%d}",
+                id, name, age, severity, arrivalSeq);
+    }
+}
@@ -1,7 +1,17 @@
 package edu.hcu.triage;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
+import java.nio.file.Path;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
@@ -9,14 +19,77 @@ import java.util.Optional;
  * Handles storing patients and assigning unique arrival sequence numbers.
  * This class mainly keeps a HashMap for quick lookups and is responsible
  * for creating NEW Patient objects.
+ *
+ * Optionally tiered: with a hot capacity and a {@link PatientSpillStore},
+ * only the most recently used patients stay on heap (LRU). Evicted ones are
+ * written to disk and faulted back in transparently on lookup. Evicted
+ * patients that are still referenced elsewhere (e.g. waiting in a
+ * TriageQueue) are found again through a weak reference, so callers always
+ * get the same Patient object the queue holds.
  */
 public class PatientRegistry {
-    // Stores patients by their ID for fast retrieval
-    private final Map<String, Patient> byId = new HashMap<>();
+    // Stores patients by their ID for fast retrieval (the hot tier when tiered)
+    private final Map<String, Patient> byId;
 
     // Counter used to assign arrival sequence numbers in the order patients register
     private long nextArrivalSeq = 0L;
 
+    // ===== Tiering (all null / unused for the plain in-memory registry) =====
+    private final int hotCapacity;
+    private final PatientSpillStore cold;
+    private final Map<String, WeakReference<Patient>> evictedButLive = new HashMap<>();
+    private final ReferenceQueue<Patient> collected = new ReferenceQueue<>();
+    private int distinct = 0;   // ids ever registered, across both tiers
+
+    private long hotHits, warmHits, coldHits, misses, evictions;
+
+    // Optional point-in-time views for reporting
+    private volatile TriageSnapshots snapshots;
+
+    /** Plain registry: every patient stays on heap. */
+    public PatientRegistry() {
+        this.byId = new HashMap<>();
+        this.hotCapacity = Integer.MAX_VALUE;
+        this.cold = null;
+    }
+
+    /**
+     * Tiered registry.
+     * @param hotCapacity max patients kept on heap
+     * @param cold        where evicted patients go
+     */
+    public PatientRegistry(int hotCapacity, PatientSpillStore cold) {
+        if (hotCapacity < 1) throw new IllegalArgumentException("hotCapacity must be >= 1");
+        if (cold == null) throw new IllegalArgumentException("spill store required");
+        this.byId = new LinkedHashMap<>(16, 0.75f, true); // access order = LRU
+        this.hotCapacity = hotCapacity;
+        this.cold = cold;
+    }
+
+    /**
+     * Registry chosen at startup by system properties:
+     *   -Dtriage.hotCapacity=N -Dtriage.spillDir=DIR   tiered (both required)
+     *   neither                                        plain in-memory registry
+     */
+    public static PatientRegistry fromSystemProperties() throws IOException {
+        String hot = System.getProperty("triage.hotCapacity");
+        String dir = System.getProperty("triage.spillDir");
+        if (hot == null && dir == null) return new PatientRegistry();
+        if (hot == null || dir == null) {
+            throw new IllegalArgumentException("triage.hotCapacity and triage.spillDir must be set together");
+        }
+        return new PatientRegistry(Integer.parseInt(hot.trim()), new PatientSpillStore(Path.of(dir)));
+    }
+
+    /**
+     * Publish every change to `snapshots` (null to stop). The current
+     * contents are seeded first, under the monitor, so nothing is missed.
+     */
+    public synchronized void setSnapshots(TriageSnapshots snapshots) {
+        if (snapshots != null) snapshots.seedRegistry(byId.values(), cold);
+        this.snapshots = snapshots;
+    }
+
     /**
      * Register a NEW patient.
      * Steps:
@@ -25,19 +98,37 @@ public class PatientRegistry {
      * 3) Create a new Patient object.
      * 4) Store it in the HashMap by its ID.
      */
-    public synchronized Patient registerNew(String id, String name, int age, int severity) {
-        Instant now = Instant.now();            // current timestamp
+    public Patient registerNew(String id, String name, int age, int severity) {
+        return registerNew(id, name, age, severity, Instant.now());  // current timestamp
+    }
+
+    /**
+     * Register a NEW patient with an explicit arrival time
+     * (used by the capacity simulation, which runs on a simulated clock).
+     */
+    public synchronized Patient registerNew(String id, String name, int age, int severity, Instant arrival) {
         long seq = nextArrivalSeq++;            // assign sequence then increment counter
 
         // Create the patient with the assigned sequence
-        Patient p = new Patient(id, name, age, severity, now, seq);
+        Patient p = new Patient(id, name, age, severity, arrival, seq);
 
         // Save to map (replace if ID already existed)
-        byId.put(id, p);
+        store(p);
 
         return p;  // return full patient object
     }
 
+    /**
+     * Store an already-built patient (CSV / binary imports).
+     * Keeps the patient's own arrivalSeq and moves the counter past it,
+     * so patients registered afterwards still sort after imported ones.
+     */
+    public synchronized void add(Patient p) {
+        if (p == null) throw new IllegalArgumentException("patient required");
+        store(p);
+        nextArrivalSeq = Math.max(nextArrivalSeq, p.getArrivalSeq() + 1);
+    }
+
     /**
      * Update an EXISTING patient.
      * Steps:
@@ -46,39 +137,222 @@ public class PatientRegistry {
      * 3) Return Optional containing the updated patient.
      */
     public synchronized Optional<Patient> updateExisting(String id, String name, Integer age, Integer severity) {
-        Patient p = byId.get(id);  // try to find the patient
+        Patient p = lookup(id);  // try to find the patient
         if (p == null) return Optional.empty();
 
-        // Update name only if a new one was given
-        if (name != null) p.setName(name);
+        // Under the patient's monitor so snapshot copies never see half an update
+        synchronized (p) {
+            // Update name only if a new one was given
+            if (name != null) p.setName(name);
 
-        // Update age only if provided
-        if (age != null) p.setAge(age);
+            // Update age only if provided
+            if (age != null) p.setAge(age);
 
-        // Update severity only if provided
-        if (severity != null) p.setSeverity(severity);
+            // Update severity only if provided
+            if (severity != null) p.setSeverity(severity);
+        }
+
+        TriageSnapshots s = snapshots;
+        if (s != null) s.patientStored(p);
 
         return Optional.of(p);
     }
 
+    /**
+     * A patient handed out by this registry was changed by someone else
+     * (e.g. re-triaged by the queue). When tiered, a patient evicted in the
+     * meantime would otherwise be served from its stale disk copy once it
+     * is garbage collected.
+     * Steps:
+     * 1) Hot: nothing to fix, just publish the new state.
+     * 2) Evicted but still referenced: promote it back to the hot tier
+     *    (it is re-spilled with the new fields when evicted again).
+     * 3) Not ours (replaced or unknown id): ignore.
+     * @return true if the registry now reflects the change
+     */
+    public synchronized boolean changed(Patient p) {
+        if (p == null) return false;
+        String id = p.getId();
+        if (byId.get(id) != p) {
+            if (residentOrNull(id) != p) return false;
+            evictedButLive.remove(id);
+            byId.put(id, p);
+        }
+        TriageSnapshots s = snapshots;
+        if (s != null) s.patientStored(p);
+        evictIfNeeded();
+        return true;
+    }
+
     /**
      * Retrieve a patient by ID quickly.
      */
     public synchronized Optional<Patient> get(String id) {
-        return Optional.ofNullable(byId.get(id));
+        return Optional.ofNullable(lookup(id));
     }
 
     /**
      * Check if a patient ID exists in the registry.
      */
     public synchronized boolean contains(String id) {
-        return byId.containsKey(id);
+        return byId.containsKey(id) || (cold != null && inCold(id));
+    }
+
+    /**
+     * Copy of all registered patients (for exports). The list is a snapshot;
+     * the Patient objects themselves are the live ones.
+     * When tiered this reads the cold tier too (without promoting anything).
+     */
+    public synchronized List<Patient> values() {
+        List<Patient> all = new ArrayList<>(byId.values());
+        if (cold == null) return all;
+
+        try {
+            cold.forEach(p -> {
+                if (byId.containsKey(p.getId())) return;       // hot copy is newer
+                Patient live = residentOrNull(p.getId());
+                all.add(live != null ? live : p);
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return all;
     }
 
     /**
      * Return how many patients have ever been registered.
      */
     public synchronized int size() {
+        return cold == null ? byId.size() : distinct;
+    }
+
+    /** Patients currently on heap (the hot tier). */
+    public synchronized int hotSize() {
         return byId.size();
     }
+
+    /* ===== Tier metrics ===== */
+
+    /** Found in the hot tier. */
+    public synchronized long getHotHits() { return hotHits; }
+
+    /** Evicted, but still referenced elsewhere, so no disk read was needed. */
+    public synchronized long getWarmHits() { return warmHits; }
+
+    /** Faulted back in from the spill store. */
+    public synchronized long getColdHits() { return coldHits; }
+
+    /** Unknown id. */
+    public synchronized long getMisses() { return misses; }
+
+    public synchronized long getEvictions() { return evictions; }
+
+    /* ===== Tier internals (callers hold the monitor) ===== */
+
+    /**
+     * Find a patient in any tier.
+     * Steps:
+     * 1) Hot map (also refreshes its LRU position).
+     * 2) Evicted-but-still-referenced patients, to keep object identity.
+     * 3) Spill store on disk.
+     * Anything found in 2) or 3) is promoted back to the hot tier.
+     */
+    private Patient lookup(String id) {
+        if (id == null) return null;
+        Patient p = byId.get(id);
+        if (p != null) {
+            hotHits++;
+            return p;
+        }
+        if (cold == null) {
+            misses++;
+            return null;
+        }
+
+        p = residentOrNull(id);
+        if (p != null) {
+            warmHits++;
+        } else {
+            try {
+                p = cold.get(id);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            if (p == null) {
+                misses++;
+                return null;
+            }
+            coldHits++;
+        }
+
+        evictedButLive.remove(id);
+        byId.put(id, p);
+        TriageSnapshots s = snapshots;
+        if (s != null) s.patientStored(p);
+        evictIfNeeded();
+        return p;
+    }
+
+    private void store(Patient p) {
+        if (cold != null && !byId.containsKey(p.getId()) && !inCold(p.getId())) distinct++;
+        evictedButLive.remove(p.getId());
+        byId.put(p.getId(), p);
+        TriageSnapshots s = snapshots;
+        if (s != null) s.patientStored(p);
+        evictIfNeeded();
+    }
+
+    /** Spill least-recently-used patients until the hot tier fits again. */
+    private void evictIfNeeded() {
+        if (byId.size() <= hotCapacity) return;
+        purgeCollected();
+
+        TriageSnapshots s = snapshots;
+        Iterator<Map.Entry<String, Patient>> it = byId.entrySet().iterator();
+        while (byId.size() > hotCapacity && it.hasNext()) {
+            Patient p = it.next().getValue();
+            try {
+                cold.put(p);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            it.remove();
+            // Only after the disk write, so every snapshot can find the patient somewhere
+            if (s != null) s.patientEvicted(p.getId(), cold.dataBytes());
+            evictedButLive.put(p.getId(), new IdReference(p, collected));
+            evictions++;
+        }
+    }
+
+    private Patient residentOrNull(String id) {
+        WeakReference<Patient> ref = evictedButLive.get(id);
+        return ref == null ? null : ref.get();
+    }
+
+    private boolean inCold(String id) {
+        try {
+            return cold.contains(id);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Drop weak entries whose Patient has been garbage collected. */
+    private void purgeCollected() {
+        Reference<? extends Patient> r;
+        while ((r = collected.poll()) != null) {
+            String id = ((IdReference) r).id;
+            if (evictedButLive.get(id) == r) evictedButLive.remove(id);
+        }
+    }
+
+    /** Weak reference that remembers its key so it can be purged after collection. */
+    private static final class IdReference extends WeakReference<Patient> {
+        private final String id;
+
+        IdReference(Patient p, ReferenceQueue<Patient> q) {
+            super(p, q);
+            this.id = p.getId();
+        }
+    }
 }
@@ -0,0 +1,290 @@
+package edu.hcu.triage;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.function.Consumer;
+
+/**
+ * On-disk cold tier for {@link PatientRegistry}: patients evicted from the
+ * heap are written here and faulted back in on lookup.
+ *
+ * Two files in one directory:
+ *   patients.dat  append-only records (a newer version of an id is simply appended
+ *                 and links back to the previous one, so older versions stay readable)
+ *   patients.idx  memory-mapped open-addressing hash table, one 16-byte slot per entry:
+ *                 id hash (int), unused (int), record offset + 1 (long; 0 = empty slot)
+ * The index doubles when it is half full; stored hashes mean a rehash never
+ * touches the data file.
+ *
+ * Because nothing is overwritten, "the store as of data length L" is a
+ * consistent view: {@link #getAsOf} / {@link #forEachAsOf} follow the version
+ * chain back below L. Registry snapshots rely on this.
+ *
+ * Locking: the monitor guards the index and the end of the data file.
+ * Bytes already written are never changed, so the as-of reads only take
+ * the monitor to copy head offsets out of the index; walking version
+ * chains, decoding and calling back happen without it (positional
+ * FileChannel reads are safe to run concurrently with the appends).
+ *
+ * This is a spill area, not a database: both files are recreated on open.
+ */
+public final class PatientSpillStore implements AutoCloseable {
+
+    private static final int SLOT_BYTES = 16;
+    private static final int INITIAL_SLOTS = 1 << 12;
+
+    private final Path dir;
+    private final FileChannel data;
+    private long dataEnd = 0;
+
+    private FileChannel indexChannel;
+    private MappedByteBuffer index;
+    private int slots;
+    private int entries = 0;
+
+    public PatientSpillStore(Path dir) throws IOException {
+        if (dir == null) throw new IllegalArgumentException("directory required");
+        Files.createDirectories(dir);
+        this.dir = dir;
+        this.data = FileChannel.open(dir.resolve("patients.dat"), StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        mapIndex(INITIAL_SLOTS);
+    }
+
+    /** Number of distinct ids stored. */
+    public synchronized int size() {
+        return entries;
+    }
+
+    /** Bytes used by the append-only data file. */
+    public synchronized long dataBytes() {
+        return dataEnd;
+    }
+
+    /**
+     * Store (or replace) a patient.
+     * Steps:
+     * 1) Find the id's slot; skip the write if the stored record is identical.
+     * 2) Append the encoded record to the data file.
+     * 3) Point the slot at the new record, growing the index if it is half full.
+     */
+    public synchronized void put(Patient p) throws IOException {
+        byte[] rec = encode(p);
+        int hash = hash(p.getId());
+        int slot = findSlot(p.getId(), hash);
+
+        long existing = index.getLong(slot * SLOT_BYTES + 8);
+        if (existing != 0 && sameBytes(existing - 1, rec)) return; // unchanged since last spill
+
+        long offset = dataEnd;
+        ByteBuffer buf = ByteBuffer.allocate(4 + 8 + rec.length);
+        buf.putInt(rec.length).putLong(existing - 1).put(rec).flip(); // previous version, -1 if none
+        while (buf.hasRemaining()) {
+            dataEnd += data.write(buf, dataEnd);
+        }
+
+        index.putInt(slot * SLOT_BYTES, hash);
+        index.putLong(slot * SLOT_BYTES + 8, offset + 1);
+        if (existing == 0 && ++entries * 2 > slots) {
+            mapIndex(slots * 2);
+        }
+    }
+
+    /** Read a patient back, or null if this id was never spilled. */
+    public synchronized Patient get(String id) throws IOException {
+        int slot = findSlot(id, hash(id));
+        long off = index.getLong(slot * SLOT_BYTES + 8);
+        return off == 0 ? null : decode(readRecord(off - 1));
+    }
+
+    /**
+     * The version of `id` that was current when the data file was `limit` bytes long,
+     * or null if it had not been spilled by then.
+     */
+    public Patient getAsOf(String id, long limit) throws IOException {
+        long head;
+        synchronized (this) {
+            head = index.getLong(findSlot(id, hash(id)) * SLOT_BYTES + 8) - 1;
+        }
+        long off = versionBefore(head, limit);
+        return off < 0 ? null : decode(readRecord(off));
+    }
+
+    public synchronized boolean contains(String id) throws IOException {
+        return index.getLong(findSlot(id, hash(id)) * SLOT_BYTES + 8) != 0;
+    }
+
+    /**
+     * Visit the latest version of every stored patient (index order, not arrival order).
+     * Versions stored after the call started may or may not be seen.
+     */
+    public void forEach(Consumer<Patient> sink) throws IOException {
+        for (long off : headOffsets()) {
+            sink.accept(decode(readRecord(off)));
+        }
+    }
+
+    /**
+     * Like {@link #forEach}, but as the store looked when the data file was `limit` bytes long.
+     * Does not hold the monitor while reading or calling back, so a slow
+     * report never holds up {@link #put}.
+     */
+    public void forEachAsOf(long limit, Consumer<Patient> sink) throws IOException {
+        for (long head : headOffsets()) {
+            long off = versionBefore(head, limit);
+            if (off >= 0) sink.accept(decode(readRecord(off)));
+        }
+    }
+
+    /** Latest record offset of every stored id, copied out of the index. */
+    private synchronized long[] headOffsets() {
+        long[] heads = new long[entries];
+        int n = 0;
+        for (int s = 0; s < slots; s++) {
+            long off = index.getLong(s * SLOT_BYTES + 8);
+            if (off != 0) heads[n++] = off - 1;
+        }
+        return heads;
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        data.close();
+        indexChannel.close();
+    }
+
+    /* ===== Index ===== */
+
+    /** Linear probing: the slot holding `id`, or the empty slot where it would go. */
+    private int findSlot(String id, int hash) throws IOException {
+        int mask = slots - 1;
+        int s = hash & mask;
+        while (true) {
+            long off = index.getLong(s * SLOT_BYTES + 8);
+            if (off == 0) return s;
+            if (index.getInt(s * SLOT_BYTES) == hash && id.equals(readId(off - 1))) return s;
+            s = (s + 1) & mask;
+        }
+    }
+
+    /** (Re)create the index file with `newSlots` slots, rehashing existing entries from their stored hashes. */
+    private void mapIndex(int newSlots) throws IOException {
+        MappedByteBuffer old = index;
+        int oldSlots = slots;
+        FileChannel oldChannel = indexChannel;
+
+        Path file = dir.resolve(old == null ? "patients.idx" : "patients.idx.tmp");
+        FileChannel ch = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        MappedByteBuffer fresh = ch.map(FileChannel.MapMode.READ_WRITE, 0, (long) newSlots * SLOT_BYTES);
+
+        int mask = newSlots - 1;
+        for (int s = 0; s < oldSlots; s++) {
+            long off = old.getLong(s * SLOT_BYTES + 8);
+            if (off == 0) continue;
+            int hash = old.getInt(s * SLOT_BYTES);
+            int t = hash & mask;
+            while (fresh.getLong(t * SLOT_BYTES + 8) != 0) {
+                t = (t + 1) & mask;
+            }
+            fresh.putInt(t * SLOT_BYTES, hash);
+            fresh.putLong(t * SLOT_BYTES + 8, off);
+        }
+
+        if (oldChannel != null) {
+            oldChannel.close();
+            ch.close(); // the mapping stays valid after the channel is closed
+            Files.move(file, dir.resolve("patients.idx"), java.nio.file.StandardCopyOption.REPLACE_EXISTING);
+            ch = FileChannel.open(dir.resolve("patients.idx"), StandardOpenOption.READ, StandardOpenOption.WRITE);
+        }
+
+        this.indexChannel = ch;
+        this.index = fresh;
+        this.slots = newSlots;
+    }
+
+    private static int hash(String id) {
+        int h = id.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /* ===== Records ===== */
+
+    // Record: id, name (length-prefixed UTF-8), age int, severity byte,
+    // arrival epochSecond long + nano int, arrivalSeq long
+    private static byte[] encode(Patient p) {
+        byte[] id = p.getId().getBytes(StandardCharsets.UTF_8);
+        byte[] name = p.getName().getBytes(StandardCharsets.UTF_8);
+        ByteBuffer b = ByteBuffer.allocate(4 + id.length + 4 + name.length + 4 + 1 + 8 + 4 + 8);
+        b.putInt(id.length).put(id);
+        b.putInt(name.length).put(name);
+        b.putInt(p.getAge());
+        b.put((byte) p.getSeverity());
+        b.putLong(p.getArrival().getEpochSecond()).putInt(p.getArrival().getNano());
+        b.putLong(p.getArrivalSeq());
+        return b.array();
+    }
+
+    private static Patient decode(ByteBuffer b) {
+        String id = readString(b);
+        String name = readString(b);
+        int age = b.getInt();
+        int severity = b.get();
+        Instant arrival = Instant.ofEpochSecond(b.getLong(), b.getInt());
+        long seq = b.getLong();
+        return new Patient(id, name, age, severity, arrival, seq);
+    }
+
+    private static String readString(ByteBuffer b) {
+        int len = b.getInt();
+        String s = new String(b.array(), b.arrayOffset() + b.position(), len, StandardCharsets.UTF_8);
+        b.position(b.position() + len);
+        return s;
+    }
+
+    // On disk: length (int), previous version offset (long, -1 = none), record bytes.
+    // Buffers are per call: these run both under the monitor and without it.
+    private ByteBuffer readRecord(long offset) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(12);
+        readAt(head, offset);
+        ByteBuffer rec = ByteBuffer.allocate(head.getInt(0));
+        readAt(rec, offset + 12);
+        return rec.flip();
+    }
+
+    /** Walk back through older versions until one starts below `limit`; -1 if none. */
+    private long versionBefore(long offset, long limit) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(12);
+        while (offset >= limit) {
+            head.clear();
+            readAt(head, offset);
+            offset = head.getLong(4);
+        }
+        return offset;
+    }
+
+    private String readId(long offset) throws IOException {
+        ByteBuffer rec = readRecord(offset);
+        return readString(rec);
+    }
+
+    private boolean sameBytes(long offset, byte[] rec) throws IOException {
+        ByteBuffer stored = readRecord(offset);
+        return stored.remaining() == rec.length && stored.equals(ByteBuffer.wrap(rec));
+    }
+
+    private void readAt(ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = data.read(buf, pos);
+            if (n < 0) throw new IOException("Spill file truncated at " + pos);
+            pos += n;
+        }
+    }
+}
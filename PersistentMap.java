@@ -0,0 +1,263 @@
+package edu.hcu.triage;
+
+import java.util.function.BiConsumer;
+
+/**
+ * Immutable String-keyed hash map (hash array mapped trie).
+ * put/remove return a NEW map that shares all untouched branches with the
+ * old one, so keeping an old root around is an O(1) point-in-time copy.
+ * Used by {@link TriageSnapshots}.
+ */
+final class PersistentMap<V> {
+
+    private static final PersistentMap<?> EMPTY = new PersistentMap<>(null, 0);
+
+    private final Node root;
+    private final int size;
+
+    private PersistentMap(Node root, int size) {
+        this.root = root;
+        this.size = size;
+    }
+
+    @SuppressWarnings("unchecked")
+    static <V> PersistentMap<V> empty() {
+        return (PersistentMap<V>) EMPTY;
+    }
+
+    int size() {
+        return size;
+    }
+
+    @SuppressWarnings("unchecked")
+    V get(String key) {
+        if (root == null) return null;
+        Entry e = root.find(0, hash(key), key);
+        return e == null ? null : (V) e.value;
+    }
+
+    PersistentMap<V> put(String key, V value) {
+        boolean[] added = new boolean[1];
+        int h = hash(key);
+        Node n = root == null
+                ? BitmapNode.EMPTY.put(0, h, key, value, added)
+                : root.put(0, h, key, value, added);
+        if (n == root) return this;
+        return new PersistentMap<>(n, added[0] ? size + 1 : size);
+    }
+
+    PersistentMap<V> remove(String key) {
+        if (root == null) return this;
+        Node n = root.remove(0, hash(key), key);
+        if (n == root) return this;
+        return new PersistentMap<>(n, size - 1);
+    }
+
+    @SuppressWarnings("unchecked")
+    void forEach(BiConsumer<String, V> action) {
+        if (root != null) root.forEach((BiConsumer<String, Object>) action);
+    }
+
+    private static int hash(String key) {
+        int h = key.hashCode();
+        return h ^ (h >>> 16);
+    }
+
+    /* ===== Trie nodes ===== */
+
+    private static final class Entry {
+        final int hash;
+        final String key;
+        final Object value;
+
+        Entry(int hash, String key, Object value) {
+            this.hash = hash;
+            this.key = key;
+            this.value = value;
+        }
+    }
+
+    private interface Node {
+        Entry find(int shift, int hash, String key);
+
+        Node put(int shift, int hash, String key, Object value, boolean[] added);
+
+        /** @return the new node, this if unchanged, or null if now empty */
+        Node remove(int shift, int hash, String key);
+
+        void forEach(BiConsumer<String, Object> action);
+    }
+
+    /** Up to 32 slots selected by 5 hash bits; each slot is an Entry or a child Node. */
+    private static final class BitmapNode implements Node {
+        static final BitmapNode EMPTY = new BitmapNode(0, new Object[0]);
+
+        private final int bitmap;
+        private final Object[] slots;
+
+        BitmapNode(int bitmap, Object[] slots) {
+            this.bitmap = bitmap;
+            this.slots = slots;
+        }
+
+        private static int bit(int shift, int hash) {
+            return 1 << ((hash >>> shift) & 31);
+        }
+
+        private int index(int bit) {
+            return Integer.bitCount(bitmap & (bit - 1));
+        }
+
+        @Override
+        public Entry find(int shift, int hash, String key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) return null;
+            Object o = slots[index(bit)];
+            if (o instanceof Node) return ((Node) o).find(shift + 5, hash, key);
+            Entry e = (Entry) o;
+            return e.key.equals(key) ? e : null;
+        }
+
+        @Override
+        public Node put(int shift, int hash, String key, Object value, boolean[] added) {
+            int bit = bit(shift, hash);
+            int idx = index(bit);
+
+            if ((bitmap & bit) == 0) {
+                Object[] copy = new Object[slots.length + 1];
+                System.arraycopy(slots, 0, copy, 0, idx);
+                copy[idx] = new Entry(hash, key, value);
+                System.arraycopy(slots, idx, copy, idx + 1, slots.length - idx);
+                added[0] = true;
+                return new BitmapNode(bitmap | bit, copy);
+            }
+
+            Object o = slots[idx];
+            Object replacement;
+            if (o instanceof Node) {
+                Node child = ((Node) o).put(shift + 5, hash, key, value, added);
+                if (child == o) return this;
+                replacement = child;
+            } else {
+                Entry e = (Entry) o;
+                if (e.key.equals(key)) {
+                    if (e.value == value) return this;
+                    replacement = new Entry(hash, key, value);
+                } else {
+                    added[0] = true;
+                    replacement = split(shift + 5, e, new Entry(hash, key, value));
+                }
+            }
+            Object[] copy = slots.clone();
+            copy[idx] = replacement;
+            return new BitmapNode(bitmap, copy);
+        }
+
+        /** Two different keys landed in one slot: push both one level down. */
+        private static Node split(int shift, Entry a, Entry b) {
+            if (a.hash == b.hash) return new CollisionNode(a.hash, new Entry[] {a, b});
+            int bitA = bit(shift, a.hash);
+            int bitB = bit(shift, b.hash);
+            if (bitA == bitB) return new BitmapNode(bitA, new Object[] {split(shift + 5, a, b)});
+            return Integer.compareUnsigned(bitA, bitB) < 0   // slot order follows bit position
+                    ? new BitmapNode(bitA | bitB, new Object[] {a, b})
+                    : new BitmapNode(bitA | bitB, new Object[] {b, a});
+        }
+
+        @Override
+        public Node remove(int shift, int hash, String key) {
+            int bit = bit(shift, hash);
+            if ((bitmap & bit) == 0) return this;
+            int idx = index(bit);
+            Object o = slots[idx];
+
+            if (o instanceof Node) {
+                Node child = ((Node) o).remove(shift + 5, hash, key);
+                if (child == o) return this;
+                if (child != null) {
+                    Object[] copy = slots.clone();
+                    copy[idx] = child;
+                    return new BitmapNode(bitmap, copy);
+                }
+            } else if (!((Entry) o).key.equals(key)) {
+                return this;
+            }
+
+            if (slots.length == 1) return null;
+            Object[] copy = new Object[slots.length - 1];
+            System.arraycopy(slots, 0, copy, 0, idx);
+            System.arraycopy(slots, idx + 1, copy, idx, slots.length - idx - 1);
+            return new BitmapNode(bitmap & ~bit, copy);
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action) {
+            for (Object o : slots) {
+                if (o instanceof Node) ((Node) o).forEach(action);
+                else action.accept(((Entry) o).key, ((Entry) o).value);
+            }
+        }
+    }
+
+    /** Keys whose full 32-bit hashes are equal. */
+    private static final class CollisionNode implements Node {
+        private final int hash;
+        private final Entry[] entries;
+
+        CollisionNode(int hash, Entry[] entries) {
+            this.hash = hash;
+            this.entries = entries;
+        }
+
+        @Override
+        public Entry find(int shift, int hash, String key) {
+            for (Entry e : entries) {
+                if (e.key.equals(key)) return e;
+            }
+            return null;
+        }
+
+        @Override
+        public Node put(int shift, int hash, String key, Object value, boolean[] added) {
+            if (hash != this.hash) {
+                // Different hash reached us through a shared prefix: add a level above
+                Node above = new BitmapNode(1 << ((this.hash >>> shift) & 31), new Object[] {this});
+                return above.put(shift, hash, key, value, added);
+            }
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(key)) {
+                    if (entries[i].value == value) return this;
+                    Entry[] copy = entries.clone();
+                    copy[i] = new Entry(hash, key, value);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            Entry[] copy = new Entry[entries.length + 1];
+            System.arraycopy(entries, 0, copy, 0, entries.length);
+            copy[entries.length] = new Entry(hash, key, value);
+            added[0] = true;
+            return new CollisionNode(hash, copy);
+        }
+
+        @Override
+        public Node remove(int shift, int hash, String key) {
+            for (int i = 0; i < entries.length; i++) {
+                if (entries[i].key.equals(key)) {
+                    if (entries.length == 1) return null;
+                    Entry[] copy = new Entry[entries.length - 1];
+                    System.arraycopy(entries, 0, copy, 0, i);
+                    System.arraycopy(entries, i + 1, copy, i, entries.length - i - 1);
+                    return new CollisionNode(hash, copy);
+                }
+            }
+            return this;
+        }
+
+        @Override
+        public void forEach(BiConsumer<String, Object> action) {
+            for (Entry e : entries) {
+                action.accept(e.key, e.value);
+            }
+        }
+    }
+}
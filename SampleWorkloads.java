@@ -24,7 +24,7 @@ public final class SampleWorkloads {
     }
 
     /** Generate random severity depending on configured distribution. */
-    private int randomSeverity() {
+    int randomSeverity() {
         switch (distribution) {
             case UNIFORM:
                 return 1 + rng.nextInt(10);   // uniform 1–10
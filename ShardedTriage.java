@@ -0,0 +1,198 @@
+package edu.hcu.triage;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Several departments (trauma, paediatrics, general...), each with its own
+ * TriageQueue, plus work-stealing so idle clinicians help overloaded bays.
+ *
+ * There is no global lock: routing only reads the immutable shard map, and
+ * choosing a shard only reads each queue's volatile head severity
+ * ({@link TriageQueue#headSeverity}), so a clinician takes exactly one shard
+ * monitor per dequeue, the one it dequeues from.
+ */
+public final class ShardedTriage {
+
+    /** Picks the department for a patient. Must return one of the shard names. */
+    public interface Router {
+        String route(Patient p);
+    }
+
+    public static final String TRAUMA = "TRAUMA";
+    public static final String PAEDIATRICS = "PAEDIATRICS";
+    public static final String GENERAL = "GENERAL";
+
+    private static final int STEAL_ATTEMPTS = 4;
+
+    private final Map<String, TriageQueue> shards;   // unmodifiable, fixed at construction
+    private final TriageQueue[] shardArray;          // same queues, for allocation-free scans
+    private final Router router;
+    private final int stealMargin;
+
+    private final LongAdder localDequeues = new LongAdder();
+    private final LongAdder steals = new LongAdder();
+    private final LongAdder inversions = new LongAdder();  // taken while a more severe head was seen
+
+    /**
+     * @param departments shard names, one TriageQueue is created per name
+     * @param router      maps a patient to one of the names
+     * @param stealMargin steal from another shard when its head is at least this
+     *                    many severity points above the local head (0 = take the most
+     *                    severe head, preferring the local shard on ties)
+     */
+    public ShardedTriage(List<String> departments, Router router, int stealMargin) {
+        if (departments == null || departments.isEmpty()) throw new IllegalArgumentException("departments required");
+        if (router == null) throw new IllegalArgumentException("router required");
+        if (stealMargin < 0) throw new IllegalArgumentException("stealMargin must be >= 0");
+
+        Map<String, TriageQueue> m = new LinkedHashMap<>();
+        for (String d : departments) {
+            if (m.put(d, new TriageQueue()) != null) throw new IllegalArgumentException("duplicate department " + d);
+        }
+        this.shards = Collections.unmodifiableMap(m);
+        this.shardArray = m.values().toArray(new TriageQueue[0]);
+        this.router = router;
+        this.stealMargin = stealMargin;
+    }
+
+    /**
+     * Default ER layout: severity >= traumaSeverity goes to TRAUMA,
+     * otherwise under-16s go to PAEDIATRICS and everyone else to GENERAL.
+     */
+    public static ShardedTriage departments(int traumaSeverity, int stealMargin) {
+        return new ShardedTriage(List.of(TRAUMA, PAEDIATRICS, GENERAL), p -> {
+            if (p.getSeverity() >= traumaSeverity) return TRAUMA;
+            if (p.getAge() < 16) return PAEDIATRICS;
+            return GENERAL;
+        }, stealMargin);
+    }
+
+    public List<String> departmentNames() {
+        return new ArrayList<>(shards.keySet());
+    }
+
+    /** The queue behind one department (e.g. to attach events or print its order). */
+    public TriageQueue shard(String department) {
+        TriageQueue q = shards.get(department);
+        if (q == null) throw new IllegalArgumentException("unknown department " + department);
+        return q;
+    }
+
+    /**
+     * Route a patient to its department's queue.
+     * @return the department it was placed in
+     */
+    public String enqueue(Patient p) {
+        if (p == null) throw new IllegalArgumentException("patient required");
+        String dept = router.route(p);
+        shard(dept).enqueue(p);
+        return dept;
+    }
+
+    public boolean enqueueById(PatientRegistry reg, String id) {
+        if (reg == null || id == null) return false;
+        Optional<Patient> op = reg.get(id);
+        if (op.isEmpty()) return false;
+        enqueue(op.get());
+        return true;
+    }
+
+    /**
+     * Next patient for a clinician based in `home`.
+     * Steps:
+     * 1) Scan every shard's published head severity (volatile reads, no locks).
+     * 2) If the local head is within stealMargin of the best one (or nothing else waits), take locally.
+     * 3) Otherwise dequeue from the shard with the best head; if it emptied meanwhile, rescan.
+     * The scan can be stale by the time the claim happens. After the claim the
+     * heads are read again, and the dequeue counts as an inversion when some
+     * shard now offers a more severe patient than the one taken.
+     */
+    public Optional<Patient> dequeueFor(String home) {
+        TriageQueue local = shard(home);
+
+        for (int attempt = 0; attempt < STEAL_ATTEMPTS; attempt++) {
+            int mine = local.headSeverity();
+
+            TriageQueue victim = null;
+            int best = 0;
+            for (TriageQueue q : shardArray) {
+                if (q == local) continue;
+                int head = q.headSeverity();
+                if (head > best) {
+                    best = head;
+                    victim = q;
+                }
+            }
+
+            if (mine == 0 && best == 0) return Optional.empty();
+
+            boolean takeLocal;
+            if (best == 0) takeLocal = true;
+            else if (mine == 0) takeLocal = false;
+            else takeLocal = best - mine < Math.max(1, stealMargin); // margin 0: only a strictly better head
+
+            Optional<Patient> p = (takeLocal ? local : victim).dequeueNext();
+            if (p.isPresent()) {
+                (takeLocal ? localDequeues : steals).increment();
+                countInversion(p.get());
+                return p;
+            }
+            // that shard emptied under us, look again
+        }
+
+        // Heavy contention: stop being picky, take whatever is available
+        Optional<Patient> p = local.dequeueNext();
+        if (p.isPresent()) {
+            localDequeues.increment();
+            countInversion(p.get());
+            return p;
+        }
+        for (TriageQueue q : shardArray) {
+            p = q.dequeueNext();
+            if (p.isPresent()) {
+                steals.increment();
+                countInversion(p.get());
+                return p;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /** Right after the claim: does any shard now offer someone more severe? */
+    private void countInversion(Patient taken) {
+        for (TriageQueue q : shardArray) {
+            if (q.headSeverity() > taken.getSeverity()) {
+                inversions.increment();
+                return;
+            }
+        }
+    }
+
+    /** Total waiting across all departments (each shard read separately, so approximate under load). */
+    public int size() {
+        int n = 0;
+        for (TriageQueue q : shardArray) {
+            n += q.size();
+        }
+        return n;
+    }
+
+    public long getLocalDequeues() {
+        return localDequeues.sum();
+    }
+
+    public long getSteals() {
+        return steals.sum();
+    }
+
+    /** Dequeues after which another shard's head was more severe than the patient taken. */
+    public long getInversions() {
+        return inversions.sum();
+    }
+}
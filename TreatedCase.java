@@ -6,7 +6,9 @@ public class TreatedCase {
 
     public enum Outcome { STABLE, OBSERVE, TRANSFER }
 
-    private final Patient patient;
+    // Copied at treatment time so the log never keeps a live Patient reachable
+    // (a tiered registry can then drop treated patients from its warm tier)
+    private final PatientRecord patient;
     private final Instant start;
     private final Instant end;
     private final Outcome outcome;
@@ -18,7 +20,7 @@ public class TreatedCase {
                        Instant end,
                        Outcome outcome,
                        String notes) {
-        this.patient = patient;
+        this.patient = PatientRecord.of(patient);
         this.start = start;
         this.end = end;
         this.outcome = outcome;
@@ -26,7 +28,7 @@ public class TreatedCase {
     }
 
     // ADDED: getter
-    public Patient getPatient() { return patient; }
+    public PatientRecord getPatient() { return patient; }
     public Instant getStart() { return start; }
     public Instant getEnd() { return end; }
     public Outcome getOutcome() { return outcome; }
@@ -7,23 +7,48 @@ public class TreatmentLog {
 
     private final LinkedList<TreatedCase> log = new LinkedList<>();
 
+    // ADDED: optional event stream (TREATED events), published outside the monitor
+    private volatile TriageEventPublisher events;
+
+    public void setEvents(TriageEventPublisher events) {
+        this.events = events;
+    }
+
+    // ADDED: optional point-in-time views, seeded with the existing history
+    private volatile TriageSnapshots snapshots;
+
+    public synchronized void setSnapshots(TriageSnapshots snapshots) {
+        if (snapshots != null) snapshots.seedLog(log);
+        this.snapshots = snapshots;
+    }
+
     // ADDED: append case
     public void append(TreatedCase tc) {
-        log.addLast(tc);
+        TriageEventPublisher ev = events;
+        TriageEvent e = null;
+        synchronized (this) {
+            log.addLast(tc);
+            if (snapshots != null) snapshots.treated(tc);
+            if (ev != null && ev.hasSubscribers()) {
+                PatientRecord p = tc.getPatient();
+                e = new TriageEvent(TriageEvent.Type.TREATED, ev.nextSeq(), p.getId(), p.getSeverity(), -1);
+            }
+        }
+        if (e != null) ev.publish(e);
     }
 
     // ADDED: size
-    public int size() {
+    public synchronized int size() {
         return log.size();
     }
 
     // ADDED: return oldest → newest
-    public List<TreatedCase> asListOldestFirst() {
+    public synchronized List<TreatedCase> asListOldestFirst() {
         return new LinkedList<>(log);
     }
 
     // ADDED: return newest → oldest
-    public List<TreatedCase> asListNewestFirst() {
+    public synchronized List<TreatedCase> asListNewestFirst() {
         LinkedList<TreatedCase> reversed = new LinkedList<>(log);
         java.util.Collections.reverse(reversed);
         return reversed;
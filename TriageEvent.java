@@ -0,0 +1,45 @@
+package edu.hcu.triage;
+
+/**
+ * One change to the triage state, pushed to boards / nurse station through
+ * {@link TriageEventPublisher}. Immutable, so it is safe to hand to any thread.
+ */
+public final class TriageEvent {
+
+    /**
+     * RESYNC is not a change: it tells the subscriber that events were lost to
+     * overflow and it should re-read the queue (patientId null, seq -1).
+     */
+    public enum Type { ENQUEUED, DEQUEUED, RETRIAGED, TREATED, RESYNC }
+
+    private final Type type;
+    private final long seq;        // publisher-wide order; delivery may be slightly out of seq order
+    private final String patientId;
+    private final int severity;    // severity at the moment of the change
+    private final int waiting;     // queue size right after the change (-1 for TREATED)
+
+    public TriageEvent(Type type, long seq, String patientId, int severity, int waiting) {
+        this.type = type;
+        this.seq = seq;
+        this.patientId = patientId;
+        this.severity = severity;
+        this.waiting = waiting;
+    }
+
+    public Type getType() { return type; }
+    public long getSeq() { return seq; }
+    public String getPatientId() { return patientId; }
+    public int getSeverity() { return severity; }
+    public int getWaiting() { return waiting; }
+
+    @Override
+    public String toString() {
+        return "TriageEvent{" +
+                "type=" + type +
+                ", seq=" + seq +
+                ", patient=" + patientId +
+                ", severity=" + severity +
+                ", waiting=" + waiting +
+                '}';
+    }
+}
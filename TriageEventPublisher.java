@@ -0,0 +1,282 @@
+package edu.hcu.triage;
+
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Push-based stream of {@link TriageEvent}s so displays stop polling
+ * {@code TriageQueue.snapshotOrder()}.
+ *
+ * Each subscriber gets its own bounded buffer and overflow policy; a slow
+ * board can only lose its own events, it never slows the queue down.
+ * {@link #publish} is called by the queue / log AFTER their monitor is
+ * released, and only appends to the per-subscriber buffers; delivery runs
+ * on the executor.
+ *
+ * Ordering: because publishing happens outside the producer's lock, two
+ * threads can hand over their events in the opposite order to their
+ * {@code seq}. Events may therefore arrive slightly out of seq order;
+ * subscribers that track per-patient state should ignore an event whose
+ * seq is lower than the last one applied for that patient.
+ *
+ * Gaps: whenever a subscriber loses an event to overflow it receives a
+ * {@link TriageEvent.Type#RESYNC} before its next event, and should re-read
+ * the queue instead of trusting its incremental view.
+ */
+public final class TriageEventPublisher implements Flow.Publisher<TriageEvent>, AutoCloseable {
+
+    /** What to do when a subscriber's buffer is full. */
+    public enum Overflow {
+        DROP_NEWEST,     // keep what is buffered, discard the incoming event
+        COALESCE_LATEST  // replace the buffered event for the same patient; if there is none, drop the oldest
+    }
+
+    public static final int DEFAULT_BUFFER = 256;
+
+    private final Executor executor;
+    private final CopyOnWriteArrayList<Sub> subscribers = new CopyOnWriteArrayList<>();
+    private final AtomicLong nextSeq = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed = false;
+
+    public TriageEventPublisher() {
+        this(ForkJoinPool.commonPool());
+    }
+
+    public TriageEventPublisher(Executor executor) {
+        if (executor == null) throw new IllegalArgumentException("executor required");
+        this.executor = executor;
+    }
+
+    /**
+     * Next event sequence number. Producers take it while applying the change
+     * (one atomic increment) so subscribers can tell the true order even
+     * though delivery happens outside the lock.
+     */
+    public long nextSeq() {
+        return nextSeq.getAndIncrement();
+    }
+
+    /** Subscribe with the default buffer size, coalescing to the latest state. */
+    @Override
+    public void subscribe(Flow.Subscriber<? super TriageEvent> subscriber) {
+        subscribe(subscriber, DEFAULT_BUFFER, Overflow.COALESCE_LATEST);
+    }
+
+    public void subscribe(Flow.Subscriber<? super TriageEvent> subscriber, int bufferSize, Overflow overflow) {
+        if (subscriber == null) throw new IllegalArgumentException("subscriber required");
+        if (bufferSize < 1) throw new IllegalArgumentException("bufferSize must be >= 1");
+        if (overflow == null) throw new IllegalArgumentException("overflow policy required");
+
+        Sub s = new Sub(subscriber, bufferSize, overflow);
+        subscriber.onSubscribe(s);
+        if (closed) {
+            s.complete();
+        } else {
+            subscribers.add(s);
+        }
+    }
+
+    /**
+     * Hand an event to every subscriber.
+     * Steps:
+     * 1) Append to each subscriber's buffer, applying its overflow policy.
+     * 2) Schedule a drain if the subscriber has outstanding demand.
+     */
+    public void publish(TriageEvent event) {
+        if (closed || event == null) return;
+        for (Sub s : subscribers) {
+            s.offer(event);
+        }
+    }
+
+    /** Whether anyone is listening; lets producers skip building events entirely. */
+    public boolean hasSubscribers() {
+        return !subscribers.isEmpty();
+    }
+
+    public int subscriberCount() {
+        return subscribers.size();
+    }
+
+    /** Events lost to full buffers, across all subscribers (coalesced events are not lost). */
+    public long droppedEvents() {
+        return dropped.get();
+    }
+
+    /** Stop accepting events; subscribers get onComplete once their buffers drain. */
+    @Override
+    public void close() {
+        closed = true;
+        for (Sub s : subscribers) {
+            s.complete();
+        }
+        subscribers.clear();
+    }
+
+    /* ===== Per-subscriber state ===== */
+
+    private final class Sub implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super TriageEvent> subscriber;
+        private final int capacity;
+        private final Overflow overflow;
+
+        // Guarded by "this"; only ever held for a single offer/poll
+        private final ArrayDeque<TriageEvent> buffer;
+        private long dropped = 0;
+        private long coalesced = 0;
+        private boolean gap = false;   // an event was lost; send RESYNC before the next one
+
+        private final AtomicLong demand = new AtomicLong();
+        private final AtomicInteger wip = new AtomicInteger(); // > 0 while a drain is scheduled/running
+        private volatile boolean cancelled = false;
+        private volatile boolean completed = false;
+        private volatile Throwable error;              // delivered by the drain loop, not the caller
+
+        Sub(Flow.Subscriber<? super TriageEvent> subscriber, int capacity, Overflow overflow) {
+            this.subscriber = subscriber;
+            this.capacity = capacity;
+            this.overflow = overflow;
+            this.buffer = new ArrayDeque<>(Math.min(capacity, 64));
+        }
+
+        /**
+         * Steps:
+         * 1) Room left: append.
+         * 2) Full, COALESCE_LATEST: replace this patient's buffered event (newest seq wins);
+         *    otherwise drop the oldest event.
+         * 3) Full, DROP_NEWEST: discard `e`.
+         * Any lost event marks a gap, so the subscriber is told to resync.
+         */
+        void offer(TriageEvent e) {
+            synchronized (this) {
+                if (buffer.size() >= capacity) {
+                    if (overflow == Overflow.COALESCE_LATEST && coalesce(e)) {
+                        coalesced++;
+                    } else {
+                        dropped++;
+                        TriageEventPublisher.this.dropped.incrementAndGet();
+                        gap = true;
+                        if (overflow == Overflow.DROP_NEWEST) return;
+                        buffer.pollFirst();
+                        buffer.addLast(e);
+                    }
+                } else {
+                    buffer.addLast(e);
+                }
+            }
+            if (demand.get() > 0) schedule();
+        }
+
+        /** Merge `e` into the buffered event for the same patient, if any. Caller holds "this". */
+        private boolean coalesce(TriageEvent e) {
+            if (e.getPatientId() == null) return false;
+            Iterator<TriageEvent> it = buffer.iterator();
+            while (it.hasNext()) {
+                TriageEvent old = it.next();
+                if (!e.getPatientId().equals(old.getPatientId())) continue;
+                if (old.getSeq() > e.getSeq()) return true; // buffered one is already newer
+                it.remove();
+                buffer.addLast(e);
+                return true;
+            }
+            return false;
+        }
+
+        void complete() {
+            completed = true;
+            schedule();
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                // rule 3.9: signal onError, but from the drain loop rather than the caller's thread
+                error = new IllegalArgumentException("request must be positive: " + n);
+                schedule();
+                return;
+            }
+            // saturating add: Long.MAX_VALUE means unbounded
+            demand.getAndUpdate(d -> d + n < 0 ? Long.MAX_VALUE : d + n);
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscribers.remove(this);
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this);
+            }
+        }
+
+        /** Drain loop; wip guarantees only one runs at a time per subscriber. */
+        @Override
+        public void run() {
+            int missed = 1;
+            while (true) {
+                if (!cancelled && error != null) fail(error);
+
+                while (!cancelled && demand.get() > 0) {
+                    TriageEvent e;
+                    synchronized (this) {
+                        if (gap && !buffer.isEmpty()) {
+                            gap = false;
+                            e = new TriageEvent(TriageEvent.Type.RESYNC, -1, null, 0, -1);
+                        } else {
+                            e = buffer.pollFirst();
+                        }
+                    }
+                    if (e == null) break;
+                    if (demand.get() != Long.MAX_VALUE) demand.decrementAndGet();
+                    try {
+                        subscriber.onNext(e);
+                    } catch (Throwable t) {
+                        // rule 2.13: a throwing subscriber is cancelled; the loop still settles wip
+                        fail(t);
+                    }
+                }
+
+                if (!cancelled && completed) {
+                    boolean empty;
+                    synchronized (this) {
+                        empty = buffer.isEmpty();
+                    }
+                    if (empty) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                    }
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) return;
+            }
+        }
+
+        private void fail(Throwable t) {
+            cancel();
+            try {
+                subscriber.onError(t);
+            } catch (Throwable ignored) {
+                // nothing left to tell a subscriber that fails in onError
+            }
+        }
+
+        @Override
+        public String toString() {
+            synchronized (this) {
+                return "Subscription{buffered=" + buffer.size() + ", dropped=" + dropped
+                        + ", coalesced=" + coalesced + ", overflow=" + overflow + '}';
+            }
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package edu.hcu.triage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Random;
+
+/**
+ * Loopback load generator for {@link TriageServer}.
+ * Opens many connections from one selector thread, keeps up to `depth`
+ * pipelined requests in flight per connection, and reports throughput
+ * plus latency percentiles (send -> matching response line).
+ *
+ * Usage: java edu.hcu.triage.TriageLoadClient [host] [port] [connections] [requestsPerConn] [depth]
+ * With port 0 an in-process server is started on an ephemeral port.
+ */
+public final class TriageLoadClient {
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "127.0.0.1";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        int connections = args.length > 2 ? Integer.parseInt(args[2]) : 2000;
+        int perConn = args.length > 3 ? Integer.parseInt(args[3]) : 200;
+        int depth = args.length > 4 ? Integer.parseInt(args[4]) : 8;
+
+        TriageServer local = null;
+        if (port == 0) {
+            local = new TriageServer(new PatientRegistry(), new TriageQueue(), new TreatmentLog(),
+                    new InetSocketAddress(host, 0), Math.max(1, Runtime.getRuntime().availableProcessors() / 2));
+            port = local.getPort();
+        }
+
+        try {
+            new TriageLoadClient(new InetSocketAddress(host, port), connections, perConn, depth, 12345L).run();
+        } finally {
+            if (local != null) local.close();
+        }
+    }
+
+    private final InetSocketAddress target;
+    private final int connections;
+    private final int perConn;
+    private final int depth;
+    private final Random rng;
+
+    private final long[] latencies;
+    private int recorded = 0;
+
+    public TriageLoadClient(InetSocketAddress target, int connections, int perConn, int depth, long seed) {
+        if (connections < 1 || perConn < 1 || depth < 1) {
+            throw new IllegalArgumentException("connections, requests and depth must be >= 1");
+        }
+        this.target = target;
+        this.connections = connections;
+        this.perConn = perConn;
+        this.depth = depth;
+        this.rng = new Random(seed);
+        this.latencies = new long[connections * perConn];
+    }
+
+    /**
+     * Steps:
+     * 1) Connect every client and fill its pipeline.
+     * 2) On each response line, record latency and send the next request.
+     * 3) When every response has arrived, print the summary.
+     */
+    public void run() throws IOException {
+        Selector selector = Selector.open();
+        Client[] clients = new Client[connections];
+
+        for (int i = 0; i < connections; i++) {
+            SocketChannel ch = SocketChannel.open(target);
+            ch.configureBlocking(false);
+            ch.socket().setTcpNoDelay(true);
+            clients[i] = new Client(i, ch);
+            clients[i].key = ch.register(selector, SelectionKey.OP_READ, clients[i]);
+        }
+
+        long begin = System.nanoTime();
+        for (Client c : clients) {
+            c.fill();
+        }
+
+        while (recorded < latencies.length) {
+            selector.select();
+            Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+            while (it.hasNext()) {
+                SelectionKey key = it.next();
+                it.remove();
+                Client c = (Client) key.attachment();
+                if (key.isReadable()) c.onReadable();
+                if (key.isValid() && key.isWritable()) c.flush();
+            }
+        }
+        long elapsed = System.nanoTime() - begin;
+
+        for (Client c : clients) {
+            c.ch.close();
+        }
+        selector.close();
+
+        report(elapsed);
+    }
+
+    private void report(long elapsedNs) {
+        Arrays.sort(latencies);
+        double seconds = elapsedNs / 1_000_000_000.0;
+
+        System.out.printf("connections=%d requests=%d depth=%d%n", connections, latencies.length, depth);
+        System.out.printf("throughput: %.0f req/s over %.3f s%n", latencies.length / seconds, seconds);
+        System.out.printf("latency us: p50=%.1f p99=%.1f p99.9=%.1f max=%.1f%n",
+                percentile(0.50), percentile(0.99), percentile(0.999),
+                latencies[latencies.length - 1] / 1000.0);
+    }
+
+    private double percentile(double q) {
+        int idx = (int) Math.min(latencies.length - 1, Math.ceil(q * latencies.length) - 1);
+        return latencies[Math.max(0, idx)] / 1000.0;
+    }
+
+    /** One connection: a ring of send timestamps matches in-order responses. */
+    private final class Client {
+        private final int index;
+        private final SocketChannel ch;
+        private SelectionKey key;
+
+        private final long[] sentAt = new long[depth];
+        private int head = 0, inFlight = 0;
+        private int sent = 0;
+
+        private final ByteBuffer in = ByteBuffer.allocate(16 * 1024);
+        private ByteBuffer out = ByteBuffer.allocate(4 * 1024);
+
+        Client(int index, SocketChannel ch) {
+            this.index = index;
+            this.ch = ch;
+        }
+
+        /** Queue requests until the pipeline is full, then write them in one go. */
+        void fill() throws IOException {
+            while (inFlight < depth && sent < perConn) {
+                byte[] req = nextRequest().getBytes(StandardCharsets.UTF_8);
+                if (out.remaining() < req.length) {
+                    ByteBuffer bigger = ByteBuffer.allocate(out.capacity() * 2 + req.length);
+                    out.flip();
+                    bigger.put(out);
+                    out = bigger;
+                }
+                out.put(req);
+                sentAt[(head + inFlight) % depth] = System.nanoTime();
+                inFlight++;
+                sent++;
+            }
+            flush();
+        }
+
+        void flush() throws IOException {
+            out.flip();
+            ch.write(out);
+            out.compact();
+            key.interestOps(out.position() > 0
+                    ? SelectionKey.OP_READ | SelectionKey.OP_WRITE
+                    : SelectionKey.OP_READ);
+        }
+
+        void onReadable() throws IOException {
+            in.clear();
+            if (ch.read(in) < 0) throw new IOException("server closed connection " + index);
+            in.flip();
+
+            long now = System.nanoTime();
+            while (in.hasRemaining()) {
+                if (in.get() == '\n') {
+                    latencies[recorded++] = now - sentAt[head];
+                    head = (head + 1) % depth;
+                    inFlight--;
+                }
+            }
+            fill();
+        }
+
+        /**
+         * Intake-heavy mix: register+enqueue a fresh patient most of the time,
+         * with peeks, dequeues and treatments sprinkled in.
+         */
+        private String nextRequest() {
+            int r = rng.nextInt(100);
+            String id = "C" + index + "-" + (sent / 2);
+            if (r < 35) return "REG " + id + " " + (18 + rng.nextInt(65)) + " " + (1 + rng.nextInt(10)) + " Load Patient\n";
+            if (r < 70) return "ENQ " + id + "\n";
+            if (r < 85) return "PEEK\n";
+            if (r < 95) return "DEQ\n";
+            return "TREAT STABLE load test\n";
+        }
+    }
+}
@@ -2,9 +2,11 @@ package edu.hcu.triage;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Optional;
 import java.util.PriorityQueue;
+import java.util.Set;
 
 /**
  * Manages the triage order using a PriorityQueue.
@@ -15,15 +17,57 @@ public class TriageQueue {
     // PriorityQueue uses TriageOrder comparator so patients are sorted correctly
     private final PriorityQueue<Patient> pq = new PriorityQueue<>(new TriageOrder());
 
+    // Ids currently in pq: a patient waits at most once (also catches a
+    // re-registered id whose old Patient object is still queued)
+    private final Set<String> waitingIds = new HashSet<>();
+
+    // Optional event stream; events are published after the monitor is released
+    private volatile TriageEventPublisher events;
+
+    // Optional point-in-time views for reporting; updated inside the monitor
+    private volatile TriageSnapshots snapshots;
+
+    // Severity of the current head (0 = empty), written inside the monitor after
+    // every change so other shards can scan it without locking
+    private volatile int headSeverity = 0;
+
+    /**
+     * Attach (or detach with null) the publisher that boards subscribe to.
+     */
+    public void setEvents(TriageEventPublisher events) {
+        this.events = events;
+    }
+
+    /**
+     * Publish every change to `snapshots` (null to stop), seeding it with
+     * the patients already waiting.
+     */
+    public synchronized void setSnapshots(TriageSnapshots snapshots) {
+        if (snapshots != null) snapshots.seedQueue(pq);
+        this.snapshots = snapshots;
+    }
+
     /**
      * Adds an already-created Patient object to the queue.
      * Steps:
      * 1) Validate the patient object is not null.
-     * 2) Insert it into the PriorityQueue.
+     * 2) Reject the patient if their id is already waiting.
+     * 3) Insert it into the PriorityQueue.
      */
-    public synchronized void enqueue(Patient p) {
+    public void enqueue(Patient p) {
         if (p == null) throw new IllegalArgumentException("patient required");
-        pq.offer(p);  // priority queue handles ordering automatically
+        TriageEventPublisher ev = events;
+        TriageEvent e;
+        synchronized (this) {
+            if (!waitingIds.add(p.getId())) {
+                throw new IllegalArgumentException("patient " + p.getId() + " is already waiting");
+            }
+            pq.offer(p);  // priority queue handles ordering automatically
+            headChanged();
+            if (snapshots != null) snapshots.enqueued(p);
+            e = eventFor(ev, TriageEvent.Type.ENQUEUED, p);
+        }
+        if (e != null) ev.publish(e);
     }
 
     /**
@@ -31,15 +75,15 @@ public class TriageQueue {
      * Steps:
      * 1) Look up the patient from the registry.
      * 2) If found, add them to the queue.
-     * 3) Return true if successful.
+     * 3) Return true if successful (throws if the id is already waiting).
      */
-    public synchronized boolean enqueueById(PatientRegistry reg, String id) {
+    public boolean enqueueById(PatientRegistry reg, String id) {
         if (reg == null || id == null) return false;
 
         Optional<Patient> op = reg.get(id);
         if (op.isEmpty()) return false;    // ID not found
 
-        pq.offer(op.get());                // enqueue patient
+        enqueue(op.get());                 // enqueue patient
         return true;
     }
 
@@ -56,8 +100,87 @@ public class TriageQueue {
      * 1) PriorityQueue.poll() removes the element with highest priority.
      * 2) Wrap it in Optional and return.
      */
-    public synchronized Optional<Patient> dequeueNext() {
-        return Optional.ofNullable(pq.poll());
+    public Optional<Patient> dequeueNext() {
+        TriageEventPublisher ev = events;
+        Patient p;
+        TriageEvent e = null;
+        synchronized (this) {
+            p = pq.poll();
+            if (p != null) {
+                waitingIds.remove(p.getId());
+                headChanged();
+                if (snapshots != null) snapshots.dequeued(p.getId());
+                e = eventFor(ev, TriageEvent.Type.DEQUEUED, p);
+            }
+        }
+        if (e != null) ev.publish(e);
+        return Optional.ofNullable(p);
+    }
+
+    /**
+     * Remove the head ONLY if it is still the expected patient.
+     * Used by work-stealing: a clinician peeks another shard, decides, and
+     * then claims that exact patient without holding both locks at once.
+     */
+    public Optional<Patient> dequeueIfNext(Patient expected) {
+        if (expected == null) return Optional.empty();
+        TriageEventPublisher ev = events;
+        TriageEvent e;
+        synchronized (this) {
+            if (pq.peek() != expected) return Optional.empty(); // someone else got there first
+            pq.poll();
+            waitingIds.remove(expected.getId());
+            headChanged();
+            if (snapshots != null) snapshots.dequeued(expected.getId());
+            e = eventFor(ev, TriageEvent.Type.DEQUEUED, expected);
+        }
+        if (e != null) ev.publish(e);
+        return Optional.of(expected);
+    }
+
+    /**
+     * Change the severity of a WAITING patient and restore the queue order.
+     * Changing severity through the registry alone would leave the heap out
+     * of order, so re-triage always goes through here.
+     * Steps:
+     * 1) Look the patient up in the registry (same object the queue holds).
+     * 2) Reorder the queue with the new severity (false if not waiting).
+     * 3) Tell the registry about the change, so a tiered registry never keeps
+     *    a stale copy on disk.
+     */
+    public boolean retriage(PatientRegistry reg, String id, int newSeverity) {
+        if (reg == null || id == null) return false;
+
+        Optional<Patient> op = reg.get(id);
+        if (op.isEmpty()) return false;    // ID not found
+
+        if (!retriage(op.get(), newSeverity)) return false;
+        reg.changed(op.get());             // after our monitor is released
+        return true;
+    }
+
+    /**
+     * Steps:
+     * 1) Remove the patient from the PriorityQueue (false if not waiting).
+     * 2) Apply the new severity.
+     * 3) Re-insert so the heap is valid again.
+     */
+    private boolean retriage(Patient p, int newSeverity) {
+        if (p == null) return false;
+        TriageEventPublisher ev = events;
+        TriageEvent e;
+        synchronized (this) {
+            if (!pq.remove(p)) return false;
+            synchronized (p) {
+                p.setSeverity(newSeverity); // see PatientRecord.of
+            }
+            pq.offer(p);
+            headChanged();
+            if (snapshots != null) snapshots.retriaged(p);
+            e = eventFor(ev, TriageEvent.Type.RETRIAGED, p);
+        }
+        if (e != null) ev.publish(e);
+        return true;
     }
 
     /**
@@ -90,5 +213,30 @@ public class TriageQueue {
      */
     public synchronized void clear() {
         pq.clear();
+        waitingIds.clear();
+        headChanged();
+        if (snapshots != null) snapshots.cleared();
+    }
+
+    /**
+     * Severity of the patient at the head, 0 when empty. Lock-free and
+     * possibly stale by the time the caller acts on it (used by ShardedTriage).
+     */
+    public int headSeverity() {
+        return headSeverity;
+    }
+
+    private void headChanged() {
+        Patient h = pq.peek();
+        headSeverity = h == null ? 0 : h.getSeverity();
+    }
+
+    /**
+     * Build the event while still holding the monitor, so seq, severity and
+     * queue size all describe the same moment. Null when nobody is listening.
+     */
+    private TriageEvent eventFor(TriageEventPublisher ev, TriageEvent.Type type, Patient p) {
+        if (ev == null || !ev.hasSubscribers()) return null;
+        return new TriageEvent(type, ev.nextSeq(), p.getId(), p.getSeverity(), pq.size());
     }
 }
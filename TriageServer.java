@@ -0,0 +1,602 @@
+package edu.hcu.triage;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Flow;
+
+/**
+ * Non-blocking triage server so many intake terminals and display boards
+ * can share ONE registry / queue / log instead of one JVM per terminal.
+ *
+ * Protocol: one request per line (UTF-8, '\n' terminated, fields separated
+ * by single spaces), one response line per request, always in request order.
+ *   PING                          -> OK PONG
+ *   REG id age severity name...   -> OK arrivalSeq
+ *   UPD id field value            -> OK | ERR ...   (field = name|age|severity)
+ *   GET id                        -> OK id age severity arrivalSeq name
+ *   ENQ id                        -> OK | ERR no such id
+ *   RETRIAGE id severity          -> OK | ERR not waiting
+ *   PEEK                          -> OK id severity | OK EMPTY
+ *   DEQ                           -> OK id severity | OK EMPTY
+ *   TREAT outcome notes...        -> OK id | OK EMPTY   (dequeue + log)
+ *   ORDER                         -> OK id,id,id...
+ *   SIZE                          -> OK registered waiting treated
+ *   SUB [overflow] [buffer]       -> OK SUBSCRIBED, then pushed EVT lines (see below)
+ *   UNSUB                         -> OK
+ *
+ * Push events: after SUB the connection also receives
+ *   EVT type seq id severity waiting   (id is "-" for RESYNC)
+ * interleaved with ordinary responses, and "EVT END" when the stream stops.
+ * Displays subscribe once instead of polling ORDER. Events are only sent as
+ * fast as the display reads; beyond that the publisher's overflow policy
+ * (default COALESCE_LATEST) applies and a RESYNC tells it to re-read ORDER.
+ *
+ * Pipelining: clients may send any number of requests without waiting.
+ * Every complete line found in a read is executed and all of the responses
+ * are written back in one batched write. A client that sends faster than it
+ * reads is paused (OP_READ off) once its unsent replies pass a high-water
+ * mark, so it cannot exhaust the server heap.
+ */
+public final class TriageServer implements AutoCloseable {
+
+    private static final int READ_BUFFER = 16 * 1024;
+    private static final int MAX_LINE = 4 * 1024;
+
+    // Backpressure: stop reading a connection whose unsent replies pass HIGH_WATER,
+    // resume once they drain below LOW_WATER
+    private static final int HIGH_WATER = 256 * 1024;
+    private static final int LOW_WATER = 64 * 1024;
+
+    private final PatientRegistry registry;
+    private final TriageQueue triage;
+    private final TreatmentLog log;
+    private final TriageEventPublisher events;   // null: SUB is not available
+
+    private final ServerSocketChannel server;
+    private final EventLoop[] loops;
+    private final Thread acceptThread;
+    private volatile boolean running = true;
+
+    public TriageServer(PatientRegistry registry, TriageQueue triage, TreatmentLog log,
+                        InetSocketAddress bind, int loopCount) throws IOException {
+        this(registry, triage, log, null, bind, loopCount);
+    }
+
+    /**
+     * @param events publisher the queue and log were attached to (setEvents);
+     *               SUB connections subscribe to it. Null disables SUB.
+     */
+    public TriageServer(PatientRegistry registry, TriageQueue triage, TreatmentLog log, TriageEventPublisher events,
+                        InetSocketAddress bind, int loopCount) throws IOException {
+        if (registry == null || triage == null || log == null) {
+            throw new IllegalArgumentException("registry, queue and log required");
+        }
+        if (loopCount < 1) throw new IllegalArgumentException("loopCount must be >= 1");
+
+        this.registry = registry;
+        this.triage = triage;
+        this.log = log;
+        this.events = events;
+
+        this.server = ServerSocketChannel.open();
+        this.server.bind(bind, 1024);
+
+        // One selector per loop; accepted channels are handed out round-robin
+        this.loops = new EventLoop[loopCount];
+        for (int i = 0; i < loopCount; i++) {
+            loops[i] = new EventLoop(i);
+            loops[i].thread.start();
+        }
+
+        this.acceptThread = new Thread(this::acceptLoop, "triage-accept");
+        this.acceptThread.start();
+    }
+
+    /** Port actually bound (useful when started on port 0). */
+    public int getPort() {
+        return server.socket().getLocalPort();
+    }
+
+    /**
+     * Usage: java [-Dtriage.hotCapacity=N -Dtriage.spillDir=DIR] edu.hcu.triage.TriageServer [port] [loops]
+     * The two properties switch on the tiered registry (see PatientRegistry.fromSystemProperties).
+     */
+    public static void main(String[] args) throws Exception {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : 7070;
+        int loopCount = args.length > 1 ? Integer.parseInt(args[1])
+                : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+
+        TriageQueue triage = new TriageQueue();
+        TreatmentLog log = new TreatmentLog();
+        TriageEventPublisher events = new TriageEventPublisher();
+        triage.setEvents(events);
+        log.setEvents(events);
+
+        TriageServer s = new TriageServer(PatientRegistry.fromSystemProperties(), triage, log, events,
+                new InetSocketAddress(port), loopCount);
+        System.out.println("Triage server listening on port " + s.getPort() + " with " + loopCount + " loop(s)");
+        s.acceptThread.join();
+    }
+
+    /* ===== Accepting ===== */
+
+    private void acceptLoop() {
+        int next = 0;
+        while (running) {
+            try {
+                SocketChannel ch = server.accept(); // blocking accept is fine on its own thread
+                ch.configureBlocking(false);
+                ch.socket().setTcpNoDelay(true);
+                loops[next].register(ch);
+                next = (next + 1) % loops.length;
+            } catch (IOException e) {
+                if (running) System.out.println("Accept failed: " + e.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        running = false;
+        server.close();
+        for (EventLoop l : loops) {
+            l.selector.wakeup();
+        }
+    }
+
+    /* ===== Per-selector event loop ===== */
+
+    private final class EventLoop implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private final ConcurrentLinkedQueue<SocketChannel> pending = new ConcurrentLinkedQueue<>();
+        private final ConcurrentLinkedQueue<SelectionKey> eventsReady = new ConcurrentLinkedQueue<>();
+
+        // Shared scratch buffer: a loop only ever reads one channel at a time
+        private final ByteBuffer readBuf = ByteBuffer.allocateDirect(READ_BUFFER);
+
+        EventLoop(int index) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, "triage-loop-" + index);
+            this.thread.setDaemon(true);
+        }
+
+        void register(SocketChannel ch) {
+            pending.add(ch);
+            selector.wakeup();
+        }
+
+        /** Called from the publisher's thread: `key` has events waiting in its inbox. */
+        void eventsArrived(SelectionKey key) {
+            eventsReady.add(key);
+            selector.wakeup();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select();
+                    SocketChannel ch;
+                    while ((ch = pending.poll()) != null) {
+                        ch.register(selector, SelectionKey.OP_READ, new Connection());
+                    }
+
+                    SelectionKey ready;
+                    while ((ready = eventsReady.poll()) != null) {
+                        if (!ready.isValid()) continue;
+                        try {
+                            Connection c = (Connection) ready.attachment();
+                            deliverEvents(c);
+                            flush(ready, c);
+                        } catch (IOException e) {
+                            closeQuietly(ready);
+                        }
+                    }
+
+                    Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+                    while (it.hasNext()) {
+                        SelectionKey key = it.next();
+                        it.remove();
+                        try {
+                            if (key.isReadable()) onReadable(key);
+                            if (key.isValid() && key.isWritable()) onWritable(key);
+                        } catch (IOException e) {
+                            closeQuietly(key);
+                        }
+                    }
+                } catch (IOException e) {
+                    System.out.println("Event loop error: " + e.getMessage());
+                }
+            }
+            // Shutting down: drop every client of this loop
+            SocketChannel ch;
+            while ((ch = pending.poll()) != null) {
+                try {
+                    ch.close();
+                } catch (IOException ignored) {
+                    // already gone
+                }
+            }
+            for (SelectionKey key : selector.keys()) {
+                closeQuietly(key);
+            }
+            try {
+                selector.close();
+            } catch (IOException ignored) {
+                // shutting down
+            }
+        }
+
+        /**
+         * Steps:
+         * 1) Read whatever is available.
+         * 2) Execute complete lines, appending responses to the connection's out buffer.
+         * 3) Flush all responses in one write; wait for OP_WRITE only if the socket is full.
+         */
+        private void onReadable(SelectionKey key) throws IOException {
+            SocketChannel ch = (SocketChannel) key.channel();
+            Connection c = (Connection) key.attachment();
+
+            readBuf.clear();
+            int n = ch.read(readBuf);
+            if (n < 0) {
+                closeQuietly(key);
+                return;
+            }
+            readBuf.flip();
+
+            if (!process(key, c, readBuf)) return;
+            flush(key, c);
+        }
+
+        /**
+         * Execute the lines in `src` until it is empty or the reply buffer
+         * passes HIGH_WATER; unprocessed bytes are parked on the connection.
+         * @return false if the connection was closed
+         */
+        private boolean process(SelectionKey key, Connection c, ByteBuffer src) throws IOException {
+            while (src.hasRemaining()) {
+                if (c.out.position() >= HIGH_WATER) {
+                    c.parked = new byte[src.remaining()];
+                    src.get(c.parked);
+                    return true;
+                }
+                byte b = src.get();
+                if (b == '\n') {
+                    c.respond(handle(key, c, c.takeLine()));
+                } else if (b != '\r') {
+                    if (!c.appendToLine(b)) {
+                        c.respond("ERR line too long");
+                        c.out.flip();
+                        ((SocketChannel) key.channel()).write(c.out);
+                        closeQuietly(key);
+                        return false;
+                    }
+                }
+            }
+            return true;
+        }
+
+        /** SUB / UNSUB need the connection; everything else is stateless. */
+        private String handle(SelectionKey key, Connection c, String request) {
+            if (request.equals("UNSUB")) {
+                if (c.events != null) c.events.cancel();
+                c.events = null;
+                return "OK";
+            }
+            if (!request.equals("SUB") && !request.startsWith("SUB ")) return execute(request);
+
+            if (events == null) return "ERR events not enabled";
+            if (c.events != null) return "ERR already subscribed";
+            String[] a = request.split(" ");
+            if (a.length > 3) return "ERR usage: SUB [DROP_NEWEST|COALESCE_LATEST] [buffer]";
+            try {
+                TriageEventPublisher.Overflow overflow = a.length > 1
+                        ? TriageEventPublisher.Overflow.valueOf(a[1]) : TriageEventPublisher.Overflow.COALESCE_LATEST;
+                int buffer = a.length > 2 ? Integer.parseInt(a[2]) : TriageEventPublisher.DEFAULT_BUFFER;
+                EventStream stream = new EventStream(this, key);
+                c.events = stream;
+                events.subscribe(stream, buffer, overflow);
+                return "OK SUBSCRIBED";
+            } catch (IllegalArgumentException e) {
+                c.events = null;
+                return "ERR " + e.getMessage();
+            }
+        }
+
+        /** Move events handed over by the publisher into the out buffer. */
+        private void deliverEvents(Connection c) {
+            EventStream es = c.events;
+            if (es == null) return;
+            String end = es.end;   // read first: every event precedes it in the inbox
+            TriageEvent e;
+            while ((e = es.inbox.poll()) != null) {
+                c.respond("EVT " + e.getType() + " " + e.getSeq() + " "
+                        + (e.getPatientId() == null ? "-" : e.getPatientId()) + " "
+                        + e.getSeverity() + " " + e.getWaiting());
+                es.owed++;
+            }
+            if (end != null) {
+                c.respond(end);
+                c.events = null;
+            }
+        }
+
+        private void onWritable(SelectionKey key) throws IOException {
+            flush(key, (Connection) key.attachment());
+        }
+
+        private void flush(SelectionKey key, Connection c) throws IOException {
+            SocketChannel ch = (SocketChannel) key.channel();
+            write(ch, c);
+
+            // Replies drained enough: finish the requests parked by backpressure
+            if (c.parked != null && c.out.position() < LOW_WATER) {
+                ByteBuffer parked = ByteBuffer.wrap(c.parked);
+                c.parked = null;
+                if (!process(key, c, parked)) return;
+                write(ch, c);
+            }
+
+            // Ask for more events only once what we already have is on its way
+            if (c.events != null && c.events.owed > 0 && c.out.position() < LOW_WATER) {
+                c.events.request(c.events.owed);
+                c.events.owed = 0;
+            }
+
+            if (c.out.position() == 0 && c.out.capacity() > HIGH_WATER) {
+                c.out = ByteBuffer.allocate(READ_BUFFER); // give back a buffer grown by a big burst
+            }
+
+            // Read only while not backed up; ask for OP_WRITE only while something is queued
+            boolean reading = c.parked == null && c.out.position() < HIGH_WATER;
+            int ops = (reading ? SelectionKey.OP_READ : 0)
+                    | (c.out.position() > 0 ? SelectionKey.OP_WRITE : 0);
+            if (key.interestOps() != ops) key.interestOps(ops);
+        }
+
+        private void write(SocketChannel ch, Connection c) throws IOException {
+            if (c.out.position() == 0) return;
+            c.out.flip();
+            ch.write(c.out);
+            c.out.compact();
+        }
+    }
+
+    /** Per-connection parse state and pending response bytes. */
+    private static final class Connection {
+        private final byte[] line = new byte[MAX_LINE];
+        private int lineLen = 0;
+        private ByteBuffer out = ByteBuffer.allocate(READ_BUFFER);
+        private byte[] parked;   // input held back while replies are above HIGH_WATER
+        private EventStream events;  // set while subscribed
+
+        boolean appendToLine(byte b) {
+            if (lineLen == line.length) return false;
+            line[lineLen++] = b;
+            return true;
+        }
+
+        String takeLine() {
+            String s = new String(line, 0, lineLen, StandardCharsets.UTF_8);
+            lineLen = 0;
+            return s;
+        }
+
+        void respond(String response) {
+            byte[] bytes = response.getBytes(StandardCharsets.UTF_8);
+            if (out.remaining() < bytes.length + 1) {
+                // Grow for this reply; process() stops taking new requests past HIGH_WATER
+                ByteBuffer bigger = ByteBuffer.allocate(Math.max(out.capacity() * 2, out.position() + bytes.length + 1));
+                out.flip();
+                bigger.put(out);
+                out = bigger;
+            }
+            out.put(bytes);
+            out.put((byte) '\n');
+        }
+    }
+
+    /**
+     * Flow subscriber behind one SUB connection. The publisher's thread only
+     * appends to the inbox and wakes the event loop; the loop writes the lines.
+     * Demand follows the socket: BATCH events up front, then each one written
+     * is requested again once the replies drain below LOW_WATER, so a display
+     * that stops reading falls back on the publisher's overflow policy.
+     */
+    private static final class EventStream implements Flow.Subscriber<TriageEvent> {
+        private static final int BATCH = 64;
+
+        private final EventLoop loop;
+        private final SelectionKey key;
+        private final ConcurrentLinkedQueue<TriageEvent> inbox = new ConcurrentLinkedQueue<>();
+        private volatile Flow.Subscription subscription;
+        private volatile String end;   // last line to send, once the stream stops
+        private long owed = 0;         // event loop only: written but not yet re-requested
+
+        EventStream(EventLoop loop, SelectionKey key) {
+            this.loop = loop;
+            this.key = key;
+        }
+
+        @Override
+        public void onSubscribe(Flow.Subscription s) {
+            subscription = s;
+            s.request(BATCH);
+        }
+
+        @Override
+        public void onNext(TriageEvent e) {
+            inbox.add(e);
+            loop.eventsArrived(key);
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            end = "EVT END " + t.getMessage();
+            loop.eventsArrived(key);
+        }
+
+        @Override
+        public void onComplete() {
+            end = "EVT END";
+            loop.eventsArrived(key);
+        }
+
+        void request(long n) {
+            Flow.Subscription s = subscription;
+            if (s != null) s.request(n);
+        }
+
+        void cancel() {
+            Flow.Subscription s = subscription;
+            if (s != null) s.cancel();
+        }
+    }
+
+    private static void closeQuietly(SelectionKey key) {
+        Connection c = (Connection) key.attachment();
+        if (c != null && c.events != null) c.events.cancel();
+        key.cancel();
+        try {
+            key.channel().close();
+        } catch (IOException ignored) {
+            // already gone
+        }
+    }
+
+    /* ===== Command execution ===== */
+
+    /**
+     * Run one request line against the shared registry / queue / log.
+     * Never throws: malformed input becomes an ERR response.
+     */
+    String execute(String request) {
+        int sp = request.indexOf(' ');
+        String cmd = sp < 0 ? request : request.substring(0, sp);
+        String rest = sp < 0 ? "" : request.substring(sp + 1);
+
+        try {
+            switch (cmd) {
+                case "PING":
+                    return "OK PONG";
+
+                case "REG": {
+                    // name goes last so it may contain spaces
+                    String[] a = rest.split(" ", 4);
+                    if (a.length != 4) return "ERR usage: REG id age severity name";
+                    Patient p = registry.registerNew(a[0], a[3], Integer.parseInt(a[1]), parseSeverity(a[2]));
+                    return "OK " + p.getArrivalSeq();
+                }
+
+                case "UPD": {
+                    String[] a = rest.split(" ", 3);
+                    if (a.length != 3) return "ERR usage: UPD id field value";
+                    Optional<Patient> p;
+                    switch (a[1]) {
+                        case "name": p = registry.updateExisting(a[0], a[2], null, null); break;
+                        case "age": p = registry.updateExisting(a[0], null, Integer.parseInt(a[2]), null); break;
+                        case "severity": p = updateSeverity(a[0], parseSeverity(a[2])); break;
+                        default: return "ERR unknown field " + a[1];
+                    }
+                    return p.isPresent() ? "OK" : "ERR no such id";
+                }
+
+                case "GET": {
+                    Optional<Patient> p = registry.get(rest);
+                    if (p.isEmpty()) return "ERR no such id";
+                    Patient x = p.get();
+                    return "OK " + x.getId() + " " + x.getAge() + " " + x.getSeverity() + " "
+                            + x.getArrivalSeq() + " " + x.getName();
+                }
+
+                case "ENQ":
+                    return triage.enqueueById(registry, rest) ? "OK" : "ERR no such id";
+
+                case "RETRIAGE": {
+                    String[] a = rest.split(" ", 2);
+                    if (a.length != 2) return "ERR usage: RETRIAGE id severity";
+                    int severity = parseSeverity(a[1]);
+                    if (!registry.contains(a[0])) return "ERR no such id";
+                    return triage.retriage(registry, a[0], severity) ? "OK" : "ERR not waiting";
+                }
+
+                case "PEEK":
+                    return describe(triage.peekNext());
+
+                case "DEQ":
+                    return describe(triage.dequeueNext());
+
+                case "TREAT": {
+                    String[] a = rest.split(" ", 2);
+                    TreatedCase.Outcome outcome = TreatedCase.Outcome.valueOf(a[0]);
+                    String notes = a.length > 1 ? a[1] : "";
+
+                    Optional<Patient> p = triage.dequeueNext();
+                    if (p.isEmpty()) return "OK EMPTY";
+
+                    Instant now = Instant.now();
+                    log.append(new TreatedCase(p.get(), now, now, outcome, notes));
+                    return "OK " + p.get().getId();
+                }
+
+                case "ORDER": {
+                    List<Patient> order = triage.snapshotOrder();
+                    StringBuilder sb = new StringBuilder("OK ");
+                    for (int i = 0; i < order.size(); i++) {
+                        if (i > 0) sb.append(',');
+                        sb.append(order.get(i).getId());
+                    }
+                    return sb.toString();
+                }
+
+                case "SIZE":
+                    return "OK " + registry.size() + " " + triage.size() + " " + log.size();
+
+                default:
+                    return "ERR unknown command " + cmd;
+            }
+        } catch (IllegalArgumentException e) {
+            // covers NumberFormatException and bad Outcome names
+            return "ERR " + e.getMessage();
+        } catch (RuntimeException e) {
+            // e.g. UncheckedIOException from a spill-store read: fail this request, keep the loop running
+            return "ERR " + e;
+        }
+    }
+
+    /**
+     * Severity changes must not bypass the queue: a waiting patient is
+     * re-triaged (removed and re-offered), anyone else is updated in place.
+     * Holding the queue's monitor keeps the patient from being enqueued in between.
+     */
+    private Optional<Patient> updateSeverity(String id, int severity) {
+        synchronized (triage) {
+            if (triage.retriage(registry, id, severity)) return registry.get(id);
+            return registry.updateExisting(id, null, null, severity);
+        }
+    }
+
+    /** Patient.setSeverity ignores out-of-range values, so reject them here instead of answering OK. */
+    private static int parseSeverity(String s) {
+        int severity = Integer.parseInt(s);
+        if (severity < 1 || severity > 10) throw new IllegalArgumentException("severity must be 1..10");
+        return severity;
+    }
+
+    private static String describe(Optional<Patient> p) {
+        return p.map(x -> "OK " + x.getId() + " " + x.getSeverity()).orElse("OK EMPTY");
+    }
+}
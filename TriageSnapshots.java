@@ -0,0 +1,259 @@
+package edu.hcu.triage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.UnaryOperator;
+
+/**
+ * Point-in-time, read-only views across registry, queue and log, for
+ * reports / audits / exports that must not stall intake.
+ *
+ * Writers keep their own monitors and additionally publish each change as a
+ * new immutable {@link Snapshot} (persistent maps share everything that did
+ * not change, so that costs a few small array copies). Patient fields are
+ * copied with {@link PatientRecord#of}, which is atomic with respect to the
+ * registry's and queue's updates. Taking a snapshot
+ * is a single volatile read, and a report can iterate it for as long as it
+ * likes while writers carry on.
+ *
+ * Wiring:
+ *   TriageSnapshots snaps = new TriageSnapshots();
+ *   registry.setSnapshots(snaps); queue.setSnapshots(snaps); log.setSnapshots(snaps);
+ *   TriageSnapshots.Snapshot s = snaps.snapshot();
+ */
+public final class TriageSnapshots {
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(Snapshot.EMPTY);
+
+    /** O(1): the latest consistent state of everything attached. */
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    /* ===== Called by the writers while they hold their own monitor ===== */
+
+    void seedRegistry(Collection<Patient> hot, PatientSpillStore cold) {
+        long limit = cold == null ? 0 : cold.dataBytes();
+        update(s -> {
+            PersistentMap<PatientRecord> m = PersistentMap.empty();
+            for (Patient p : hot) {
+                m = m.put(p.getId(), PatientRecord.of(p));
+            }
+            return new Snapshot(s.version + 1, m, s.waiting, s.log, s.logSize, cold, limit);
+        });
+    }
+
+    void seedQueue(Collection<Patient> waiting) {
+        update(s -> {
+            PersistentMap<PatientRecord> m = PersistentMap.empty();
+            for (Patient p : waiting) {
+                m = m.put(p.getId(), PatientRecord.of(p));
+            }
+            return new Snapshot(s.version + 1, s.registry, m, s.log, s.logSize, s.cold, s.coldLimit);
+        });
+    }
+
+    void seedLog(List<TreatedCase> oldestFirst) {
+        update(s -> {
+            LogNode n = null;
+            for (TreatedCase tc : oldestFirst) {
+                n = new LogNode(new LogEntry(tc, tc.getPatient()), n);
+            }
+            return new Snapshot(s.version + 1, s.registry, s.waiting, n, oldestFirst.size(), s.cold, s.coldLimit);
+        });
+    }
+
+    /** Registered, updated, or promoted back to the hot tier. */
+    void patientStored(Patient p) {
+        PatientRecord r = PatientRecord.of(p);
+        update(s -> s.withRegistry(s.registry.put(r.getId(), r), s.coldLimit));
+    }
+
+    /** Spilled to disk; `coldLimit` is the spill file length after the write. */
+    void patientEvicted(String id, long coldLimit) {
+        update(s -> s.withRegistry(s.registry.remove(id), coldLimit));
+    }
+
+    void enqueued(Patient p) {
+        PatientRecord r = PatientRecord.of(p);
+        update(s -> s.withWaiting(s.waiting.put(r.getId(), r)));
+    }
+
+    void dequeued(String id) {
+        update(s -> s.withWaiting(s.waiting.remove(id)));
+    }
+
+    /**
+     * Severity changed while waiting. Both views change in the same step, so
+     * no snapshot shows the old severity on one side and the new one on the
+     * other. An evicted patient (not in the registry view) is read from disk
+     * as before; {@link PatientRegistry#changed} then promotes it and
+     * publishes the same record again.
+     */
+    void retriaged(Patient p) {
+        PatientRecord r = PatientRecord.of(p);
+        update(s -> {
+            PersistentMap<PatientRecord> reg = s.registry.get(r.getId()) != null
+                    ? s.registry.put(r.getId(), r) : s.registry;
+            return new Snapshot(s.version + 1, reg, s.waiting.put(r.getId(), r), s.log, s.logSize,
+                    s.cold, s.coldLimit);
+        });
+    }
+
+    void cleared() {
+        update(s -> s.withWaiting(PersistentMap.empty()));
+    }
+
+    void treated(TreatedCase tc) {
+        LogEntry e = new LogEntry(tc, tc.getPatient());
+        update(s -> new Snapshot(s.version + 1, s.registry, s.waiting, new LogNode(e, s.log), s.logSize + 1,
+                s.cold, s.coldLimit));
+    }
+
+    private void update(UnaryOperator<Snapshot> change) {
+        while (true) {
+            Snapshot s = current.get();
+            if (current.compareAndSet(s, change.apply(s))) return;
+        }
+    }
+
+    /* ===== Snapshot ===== */
+
+    /** Immutable view. Everything here is as of one moment; nothing blocks writers. */
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, PersistentMap.empty(), PersistentMap.empty(), null, 0, null, 0);
+
+        private final long version;
+        private final PersistentMap<PatientRecord> registry;  // hot tier (or everyone, when not tiered)
+        private final PersistentMap<PatientRecord> waiting;   // by id; ordered on demand
+        private final LogNode log;                            // newest first
+        private final int logSize;
+        private final PatientSpillStore cold;                 // null when the registry is not tiered
+        private final long coldLimit;                         // spill file length at this moment
+
+        private Snapshot(long version, PersistentMap<PatientRecord> registry, PersistentMap<PatientRecord> waiting,
+                         LogNode log, int logSize, PatientSpillStore cold, long coldLimit) {
+            this.version = version;
+            this.registry = registry;
+            this.waiting = waiting;
+            this.log = log;
+            this.logSize = logSize;
+            this.cold = cold;
+            this.coldLimit = coldLimit;
+        }
+
+        private Snapshot withRegistry(PersistentMap<PatientRecord> r, long limit) {
+            return new Snapshot(version + 1, r, waiting, log, logSize, cold, limit);
+        }
+
+        private Snapshot withWaiting(PersistentMap<PatientRecord> w) {
+            return new Snapshot(version + 1, registry, w, log, logSize, cold, coldLimit);
+        }
+
+        /** Increases with every change; equal versions mean identical state. */
+        public long getVersion() {
+            return version;
+        }
+
+        /**
+         * Look a patient up as of this snapshot.
+         * Hot-tier patients come from the persistent map; spilled ones are read
+         * from the spill store's version chain, cut off at this snapshot's length.
+         */
+        public Optional<PatientRecord> patient(String id) {
+            PatientRecord r = registry.get(id);
+            if (r != null || cold == null) return Optional.ofNullable(r);
+            try {
+                Patient p = cold.getAsOf(id, coldLimit);
+                return p == null ? Optional.empty() : Optional.of(PatientRecord.of(p));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        /** Visit every registered patient (no particular order). */
+        public void forEachPatient(Consumer<PatientRecord> action) {
+            registry.forEach((id, r) -> action.accept(r));
+            if (cold == null) return;
+            try {
+                cold.forEachAsOf(coldLimit, p -> {
+                    if (registry.get(p.getId()) == null) action.accept(PatientRecord.of(p));
+                });
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+
+        public int waitingCount() {
+            return waiting.size();
+        }
+
+        /** Waiting patients in triage order (same rule as TriageOrder). */
+        public List<PatientRecord> waitingInTriageOrder() {
+            List<PatientRecord> list = new ArrayList<>(waiting.size());
+            waiting.forEach((id, r) -> list.add(r));
+            list.sort((a, b) -> {
+                int c = Integer.compare(b.getSeverity(), a.getSeverity());
+                return c != 0 ? c : Long.compare(a.getArrivalSeq(), b.getArrivalSeq());
+            });
+            return Collections.unmodifiableList(list);
+        }
+
+        public int treatedCount() {
+            return logSize;
+        }
+
+        public List<LogEntry> treatedOldestFirst() {
+            LogEntry[] arr = new LogEntry[logSize];
+            int i = logSize;
+            for (LogNode n = log; n != null; n = n.next) {
+                arr[--i] = n.entry;
+            }
+            return List.of(arr);
+        }
+
+        public List<LogEntry> treatedNewestFirst() {
+            List<LogEntry> list = new ArrayList<>(logSize);
+            for (LogNode n = log; n != null; n = n.next) {
+                list.add(n.entry);
+            }
+            return Collections.unmodifiableList(list);
+        }
+    }
+
+    /** One treatment, with the patient frozen as they were when it was logged. */
+    public static final class LogEntry {
+        private final TreatedCase treatedCase;
+        private final PatientRecord patient;
+
+        LogEntry(TreatedCase treatedCase, PatientRecord patient) {
+            this.treatedCase = treatedCase;
+            this.patient = patient;
+        }
+
+        public PatientRecord getPatient() { return patient; }
+        public Instant getStart() { return treatedCase.getStart(); }
+        public Instant getEnd() { return treatedCase.getEnd(); }
+        public TreatedCase.Outcome getOutcome() { return treatedCase.getOutcome(); }
+        public String getNotes() { return treatedCase.getNotes(); }
+    }
+
+    /** Persistent (cons) list node; newest entry at the head. */
+    private static final class LogNode {
+        final LogEntry entry;
+        final LogNode next;
+
+        LogNode(LogEntry entry, LogNode next) {
+            this.entry = entry;
+            this.next = next;
+        }
+    }
+}